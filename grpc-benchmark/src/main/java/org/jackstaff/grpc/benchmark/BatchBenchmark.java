@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.annotation.Batch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * many threads calling one small UNARY method, each call alone vs @Batch,
+ * run: java -jar target/benchmarks.jar BatchBenchmark
+ * @author reco@jackstaff.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(1)
+public class BatchBenchmark {
+
+    public interface Counter {
+
+        long add(long value);
+
+        @Batch(window = 1, size = 64)
+        long batchAdd(long value);
+
+    }
+
+    public static class CounterImpl implements Counter {
+
+        @Override
+        public long add(long value) {
+            return value + 1;
+        }
+
+        @Override
+        public long batchAdd(long value) {
+            return value + 1;
+        }
+
+    }
+
+    private Loopback loopback;
+    private Counter counter;
+
+    @Setup
+    public void setup() {
+        loopback = new Loopback().register(Counter.class, new CounterImpl()).start();
+        counter = loopback.autowired(Counter.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        loopback.shutdown();
+    }
+
+    @Benchmark
+    public long single() {
+        return counter.add(1);
+    }
+
+    @Benchmark
+    public long batch() {
+        return counter.batchAdd(1);
+    }
+
+}
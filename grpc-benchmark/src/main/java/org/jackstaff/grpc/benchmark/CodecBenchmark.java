@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.PacketCodec;
+import org.jackstaff.grpc.kryo.KryoCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * unary round trip of a (v1) POJO on the loopback, by the Packet codec: protostuff, graph, kryo (grpc-kryo),
+ * run: java -jar target/benchmarks.jar CodecBenchmark -t 8
+ * @author reco@jackstaff.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CodecBenchmark {
+
+    public static class Order {
+
+        private long id;
+        private String customer;
+        private List<String> items;
+        private Map<String, Integer> quantities;
+
+    }
+
+    public interface Orders {
+
+        Order echo(Order order);
+
+    }
+
+    public static class OrdersImpl implements Orders {
+
+        @Override
+        public Order echo(Order order) {
+            return order;
+        }
+
+    }
+
+    @Param({PacketCodec.PROTOSTUFF, PacketCodec.GRAPH, KryoCodec.KRYO})
+    public String codec;
+
+    @Param({"4", "64"})
+    public int items;
+
+    private Loopback loopback;
+    private Orders orders;
+    private Order order;
+
+    @Setup
+    public void setup() {
+        KryoCodec.register(Order.class);
+        loopback = new Loopback().register(Orders.class, new OrdersImpl());
+        loopback.getServerConfig().setCodecs(Arrays.asList(PacketCodec.PROTOSTUFF, PacketCodec.GRAPH, KryoCodec.KRYO));
+        loopback.getClientConfig().setCodec(codec);
+        loopback.start();
+        orders = loopback.autowired(Orders.class);
+        order = new Order();
+        order.id = 1;
+        order.customer = "jackstaff";
+        order.items = new ArrayList<>();
+        order.quantities = new HashMap<>();
+        for (int i = 0; i < items; i++) {
+            order.items.add("item-" + i);
+            order.quantities.put("item-" + i, i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        loopback.shutdown();
+    }
+
+    @Benchmark
+    public Order echo() {
+        return orders.echo(order);
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+/**
+ * the (v1) protocol interface of the benchmarks
+ * @author reco@jackstaff.org
+ */
+public interface Greeter {
+
+    String hello(String name);
+
+    byte[] echo(byte[] payload);
+
+    /**
+     * the implement of the benchmark server
+     */
+    class Impl implements Greeter {
+
+        @Override
+        public String hello(String name) {
+            return "hello " + name;
+        }
+
+        @Override
+        public byte[] echo(byte[] payload) {
+            return payload;
+        }
+
+    }
+
+}
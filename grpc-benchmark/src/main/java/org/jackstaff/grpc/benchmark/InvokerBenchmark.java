@@ -0,0 +1,208 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import org.jackstaff.grpc.Context;
+import org.jackstaff.grpc.Interceptor;
+import org.jackstaff.grpc.MethodDescriptor;
+import org.jackstaff.grpc.MethodType;
+import org.jackstaff.grpc.annotation.RpcMethod;
+import org.jackstaff.grpc.internal.Stub;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * the client side per call overhead of UNARY and ASYNCHRONOUS_UNARY: the proxy, the resolved Invoker, the Stub / Context,
+ * the interceptors. "dispatch" stops the call in the interceptor's before (nothing is sent), "call" is the loopback round trip,
+ * "baseline" adds the per call work of the client before the invokers were resolved at autowired time
+ * (a MethodKey in a shared ConcurrentHashMap, a new Stub from the prototype, the interceptor list, the eager attribute map,
+ * the arguments' copy) in front of the dispatch, through one more proxy.
+ * run with the allocation profiler: java -jar target/benchmarks.jar InvokerBenchmark -prof gc
+ * @author reco@jackstaff.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvokerBenchmark {
+
+    public interface Hello {
+
+        String hello(String name);
+
+        @RpcMethod(methodType = MethodType.ASYNCHRONOUS_UNARY)
+        default void hello(String name, Consumer<String> reply) {
+        }
+
+    }
+
+    public static class HelloImpl implements Hello {
+
+        @Override
+        public String hello(String name) {
+            return name;
+        }
+
+    }
+
+    /**
+     * the key of the client's method table before the invokers
+     */
+    private static final class MethodKey {
+
+        private final Class<?> type;
+        private final Method method;
+
+        MethodKey(Class<?> type, Method method) {
+            this.type = type;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MethodKey methodKey = (MethodKey) o;
+            return type.equals(methodKey.type) && method.equals(methodKey.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, method);
+        }
+
+    }
+
+    /**
+     * stops every call before it's sent, without a stack trace
+     */
+    private static final RuntimeException STOP = new RuntimeException("stop", null, false, false) {
+    };
+
+    private Loopback loopback;
+    private Hello hello;
+    private Hello stopped;
+    private Hello baseline;
+    private ManagedChannel channel;
+    private Object[] sink;
+    private final Consumer<String> ignore = reply -> {
+    };
+
+    @Setup
+    public void setup() {
+        loopback = new Loopback().register(Hello.class, new HelloImpl()).start();
+        hello = loopback.autowired(Hello.class);
+        stopped = loopback.getClient().autowired(Loopback.AUTHORITY, Hello.class, true, Collections.singletonList(new Interceptor() {
+            @Override
+            public void before(Context context) {
+                throw STOP;
+            }
+        }));
+        channel = ManagedChannelBuilder.forAddress("127.0.0.1", loopback.getServerConfig().getPort()).usePlaintext().build();
+        baseline = baseline(stopped, new Stub<>(Loopback.AUTHORITY, channel, Duration.ZERO), null);
+    }
+
+    /**
+     * the removed per call work (what it allocates is kept in "sink", NOT eliminated), then the current dispatch.
+     * the target is called directly, Method.invoke would wrap the STOP in a new InvocationTargetException
+     */
+    @SuppressWarnings("unchecked")
+    private Hello baseline(Hello target, Stub<?, ?, ?> prototype, List<Interceptor> interceptors) {
+        Map<MethodKey, MethodDescriptor> methods = new ConcurrentHashMap<>();
+        for (Method method : Hello.class.getMethods()) {
+            methods.put(new MethodKey(Hello.class, method), new MethodDescriptor(Hello.class, method));
+        }
+        return (Hello) Proxy.newProxyInstance(Hello.class.getClassLoader(), new Class<?>[]{Hello.class}, (proxy, method, args) -> {
+            MethodDescriptor descriptor = methods.get(new MethodKey(Hello.class, method));
+            List<Interceptor> chain = Optional.ofNullable(interceptors).orElseGet(ArrayList::new);
+            sink = new Object[]{new Stub<>((Stub<?, Object, Object>) prototype, descriptor), chain, new HashMap<String, Object>(), args.clone()};
+            if (args.length == 1) {
+                return target.hello((String) args[0]);
+            }
+            target.hello((String) args[0], (Consumer<String>) args[1]);
+            return null;
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.shutdownNow();
+        loopback.shutdown();
+    }
+
+    @Benchmark
+    public Object unaryDispatch() {
+        try {
+            return stopped.hello("hi");
+        } catch (RuntimeException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Object asyncUnaryDispatch() {
+        try {
+            stopped.hello("hi", ignore);
+            return null;
+        } catch (RuntimeException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Object unaryDispatchBaseline() {
+        try {
+            return baseline.hello("hi");
+        } catch (RuntimeException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Object asyncUnaryDispatchBaseline() {
+        try {
+            baseline.hello("hi", ignore);
+            return null;
+        } catch (RuntimeException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public String unaryCall() {
+        return hello.hello("hi");
+    }
+
+    @Benchmark
+    public String asyncUnaryCall() {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        hello.hello("hi", reply::complete);
+        return reply.join();
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.Client;
+import org.jackstaff.grpc.Server;
+import org.jackstaff.grpc.configuration.ClientConfig;
+import org.jackstaff.grpc.configuration.ServerConfig;
+import org.jackstaff.grpc.configuration.Transport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+
+/**
+ * a server and a client on the loopback, the fixture of the benchmarks
+ * @author reco@jackstaff.org
+ */
+public class Loopback {
+
+    public static final String AUTHORITY = "loopback";
+
+    private final Server server = new Server();
+    private final Client client = new Client();
+    private final ServerConfig serverConfig = new ServerConfig();
+    private final ClientConfig clientConfig = new ClientConfig();
+
+    public Loopback() {
+        int port = freePort();
+        serverConfig.setPort(port);
+        clientConfig.setHost("127.0.0.1");
+        clientConfig.setPort(port);
+        clientConfig.setPlaintext(true);
+    }
+
+    public Loopback transport(Transport transport) {
+        serverConfig.setTransport(transport);
+        clientConfig.setTransport(transport);
+        return this;
+    }
+
+    public Server getServer() {
+        return server;
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    public ServerConfig getServerConfig() {
+        return serverConfig;
+    }
+
+    public ClientConfig getClientConfig() {
+        return clientConfig;
+    }
+
+    public <T> Loopback register(Class<T> type, T bean) {
+        server.register(type, bean, Collections.emptyList());
+        return this;
+    }
+
+    public Loopback start() {
+        server.start(serverConfig);
+        client.setup(AUTHORITY, clientConfig);
+        return this;
+    }
+
+    public <T> T autowired(Class<T> type) {
+        return client.autowired(AUTHORITY, type);
+    }
+
+    public void shutdown() {
+        client.shutdown();
+        server.shutdown();
+    }
+
+    static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
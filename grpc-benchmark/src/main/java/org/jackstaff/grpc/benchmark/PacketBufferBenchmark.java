@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import com.google.protobuf.ByteString;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.DefaultIdStrategy;
+import io.protostuff.runtime.IdStrategy;
+import io.protostuff.runtime.RuntimeSchema;
+import org.jackstaff.grpc.Packet;
+import org.jackstaff.grpc.PacketCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * allocation per (v1) unary call of the Packet serialization: "protostuff" reuse the per thread buffers,
+ * "allocating" is the former path (a new LinkedBuffer per encode, the bytes copied into and out of the ByteString),
+ * run with the allocation profiler: java -jar target/benchmarks.jar PacketBufferBenchmark -prof gc
+ * @author reco@jackstaff.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PacketBufferBenchmark {
+
+    public interface Messages {
+
+        String echo(String message);
+
+    }
+
+    public static class MessagesImpl implements Messages {
+
+        @Override
+        public String echo(String message) {
+            return message;
+        }
+
+    }
+
+    /**
+     * the Packet codec before the per thread buffers
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static class AllocatingCodec implements PacketCodec {
+
+        private final Schema<Packet> schema = RuntimeSchema.createFrom(Packet.class, new DefaultIdStrategy(
+                IdStrategy.DEFAULT_FLAGS | IdStrategy.ALLOW_NULL_ARRAY_ELEMENT |
+                        IdStrategy.MORPH_NON_FINAL_POJOS | IdStrategy.COLLECTION_SCHEMA_ON_REPEATED_FIELDS));
+
+        @Override
+        public String name() {
+            return "allocating";
+        }
+
+        @Override
+        public ByteString encode(Packet<?> packet) {
+            return ByteString.copyFrom(ProtostuffIOUtil.toByteArray(packet, schema, LinkedBuffer.allocate()));
+        }
+
+        @Override
+        public Packet<?> decode(ByteString data) {
+            Packet<?> packet = new Packet<>();
+            ProtostuffIOUtil.mergeFrom(data.toByteArray(), packet, (Schema) schema);
+            return packet;
+        }
+
+    }
+
+    @Param({PacketCodec.PROTOSTUFF, "allocating"})
+    public String codec;
+
+    @Param({"16", "4096"})
+    public int size;
+
+    private Loopback loopback;
+    private Messages messages;
+    private String message;
+
+    @Setup
+    public void setup() {
+        PacketCodec.register(new AllocatingCodec());
+        loopback = new Loopback().register(Messages.class, new MessagesImpl());
+        loopback.getClientConfig().setCodec(codec);
+        loopback.start();
+        messages = loopback.autowired(Messages.class);
+        StringBuilder builder = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        message = builder.toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        loopback.shutdown();
+    }
+
+    @Benchmark
+    public String echo() {
+        return messages.echo(message);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * unary round trip of the (v1) HelloService / AdvancedHelloService payloads of the demo on the loopback,
+ * the arguments by the default packing (Packet boxing, type tags) vs the typed packing (ClientConfig.typedPacking),
+ * run with the allocation profiler: java -jar target/benchmarks.jar PackingBenchmark -prof gc
+ * @author reco@jackstaff.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackingBenchmark {
+
+    public static final class HelloRequest {
+
+        private String greeting;
+
+    }
+
+    public static final class HelloResponse {
+
+        private String reply;
+
+    }
+
+    public static final class SocialInfo {
+
+        private int id;
+        private String message;
+        private List<String> friends;
+
+    }
+
+    public interface Hello {
+
+        String sayHello(String greeting);
+
+        HelloResponse reply(HelloRequest request);
+
+        String greetings(SocialInfo socialInfo, int times);
+
+    }
+
+    public static class HelloImpl implements Hello {
+
+        private final HelloResponse response = new HelloResponse();
+
+        @Override
+        public String sayHello(String greeting) {
+            return greeting;
+        }
+
+        @Override
+        public HelloResponse reply(HelloRequest request) {
+            return response;
+        }
+
+        @Override
+        public String greetings(SocialInfo socialInfo, int times) {
+            return socialInfo.message;
+        }
+
+    }
+
+    @Param({"false", "true"})
+    public boolean typed;
+
+    private Loopback loopback;
+    private Hello hello;
+    private HelloRequest request;
+    private SocialInfo socialInfo;
+
+    @Setup
+    public void setup() {
+        loopback = new Loopback().register(Hello.class, new HelloImpl());
+        loopback.getClientConfig().setTypedPacking(typed);
+        loopback.start();
+        hello = loopback.autowired(Hello.class);
+        request = new HelloRequest();
+        request.greeting = "hello, jackstaff";
+        socialInfo = new SocialInfo();
+        socialInfo.id = 1;
+        socialInfo.message = "hello, friends";
+        socialInfo.friends = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            socialInfo.friends.add("friend-" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        loopback.shutdown();
+    }
+
+    @Benchmark
+    public String sayHello() {
+        return hello.sayHello("hello, jackstaff");
+    }
+
+    @Benchmark
+    public HelloResponse request() {
+        return hello.reply(request);
+    }
+
+    @Benchmark
+    public String socialInfo() {
+        return hello.greetings(socialInfo, 3);
+    }
+
+}
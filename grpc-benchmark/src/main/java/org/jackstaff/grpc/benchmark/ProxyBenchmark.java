@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.ProtocolProxy;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * the client side dispatch of a protocol method, without the call itself:
+ * jdk Proxy (InvocationHandler, Method lookup per call, like Client does) vs the generated ProtocolProxy,
+ * run: java -jar target/benchmarks.jar ProxyBenchmark
+ * @author reco@jackstaff.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyBenchmark {
+
+    private Echo jdk;
+    private Echo generated;
+
+    @Setup
+    public void setup() {
+        Map<Method, ProtocolProxy.Call> calls = Arrays.stream(Echo.class.getMethods()).collect(Collectors.toMap(Function.identity(),
+                method -> method.getName().equals("echo") ? (proxy, args) -> args[0] : (proxy, args) -> (Long) args[0] + (Long) args[1]));
+        jdk = (Echo) Proxy.newProxyInstance(Echo.class.getClassLoader(), new Class[]{Echo.class},
+                (proxy, method, args) -> calls.get(method).call(proxy, args));
+        generated = new EchoProxy(calls::get);
+    }
+
+    @Benchmark
+    public String jdkEcho() {
+        return jdk.echo("hi");
+    }
+
+    @Benchmark
+    public String generatedEcho() {
+        return generated.echo("hi");
+    }
+
+    @Benchmark
+    public long jdkAdd() {
+        return jdk.add(1, 2);
+    }
+
+    @Benchmark
+    public long generatedAdd() {
+        return generated.add(1, 2);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.configuration.Transport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * unary round trip on the loopback, NIO vs EPOLL (linux only, the EPOLL result on other os is NIO's),
+ * run: java -jar target/benchmarks.jar TransportBenchmark -t 8
+ * @author reco@jackstaff.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"NIO", "EPOLL"})
+    public Transport transport;
+
+    @Param({"16", "4096"})
+    public int size;
+
+    private Loopback loopback;
+    private Greeter greeter;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        loopback = new Loopback().transport(transport).register(Greeter.class, new Greeter.Impl()).start();
+        greeter = loopback.autowired(Greeter.class);
+        payload = new byte[size];
+    }
+
+    @TearDown
+    public void tearDown() {
+        loopback.shutdown();
+    }
+
+    @Benchmark
+    public byte[] echo() {
+        return greeter.echo(payload);
+    }
+
+}
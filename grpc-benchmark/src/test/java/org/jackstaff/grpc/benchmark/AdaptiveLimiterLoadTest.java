@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.AdaptiveLimiter;
+import org.jackstaff.grpc.Status;
+import org.jackstaff.grpc.configuration.Limit;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * the load test of the server's adaptive limit: a service of 4 permits * 5ms, called by 4 threads (at its capacity)
+ * then by 64 threads (far past it), the p99 of the served calls seen by the callers stays flat,
+ * the excess is shed with UNAVAILABLE. about 20 seconds and timing dependent, so NOT in the default build:
+ * mvn test -Pload
+ * @author reco@jackstaff.org
+ */
+public class AdaptiveLimiterLoadTest {
+
+    private static final int CAPACITY = 4;
+    private static final long SERVICE_MILLIS = 5;
+    private static final long BACKOFF_MILLIS = SERVICE_MILLIS * 4;
+
+    public interface Work {
+
+        int work(int id);
+
+    }
+
+    /**
+     * CAPACITY calls at a time, each takes SERVICE_MILLIS, the others wait
+     */
+    public static class WorkImpl implements Work {
+
+        private final Semaphore permits = new Semaphore(CAPACITY, true);
+        private final Queue<Long> latency = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public int work(int id) {
+            long start = System.nanoTime();
+            permits.acquireUninterruptibly();
+            try {
+                Thread.sleep(SERVICE_MILLIS);
+                return id;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return -1;
+            } finally {
+                permits.release();
+                latency.add(System.nanoTime() - start);
+            }
+        }
+
+        List<Long> drain() {
+            List<Long> list = new ArrayList<>();
+            Long value;
+            while ((value = latency.poll()) != null) {
+                list.add(value);
+            }
+            return list;
+        }
+
+    }
+
+    private static final class Result {
+
+        private final List<Long> served;
+        private final List<Long> latency;
+        private final long shed;
+
+        Result(List<Long> served, List<Long> latency, long shed) {
+            this.served = served;
+            this.latency = latency;
+            this.shed = shed;
+        }
+
+        /**
+         * @return the p99 of the served calls seen by the callers
+         */
+        long p99() {
+            return p99(latency);
+        }
+
+        private static long p99(List<Long> latency) {
+            List<Long> sorted = new ArrayList<>(latency);
+            Collections.sort(sorted);
+            return sorted.isEmpty() ? 0 : sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+        }
+
+        @Override
+        public String toString() {
+            return "calls=" + latency.size() + ", shed=" + shed + ", p99=" + TimeUnit.NANOSECONDS.toMicros(p99()) +
+                    "us, in service p99=" + TimeUnit.NANOSECONDS.toMicros(p99(served)) + "us";
+        }
+
+    }
+
+    private Loopback loopback;
+    private WorkImpl impl;
+
+    @After
+    public void tearDown() {
+        if (loopback != null) {
+            loopback.shutdown();
+        }
+    }
+
+    private Work start(Limit limit) {
+        impl = new WorkImpl();
+        loopback = new Loopback().register(Work.class, impl);
+        loopback.getServerConfig().setLimit(limit);
+        return loopback.start().autowired(Work.class);
+    }
+
+    /**
+     * "threads" closed loop callers for "millis", a shed caller backs off
+     */
+    private Result load(Work work, int threads, long millis) throws Exception {
+        impl.drain();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Long> latency = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong shed = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+                    try {
+                        work.work(id);
+                        latency.add(System.nanoTime() - start);
+                    } catch (RuntimeException ex) {
+                        if (Status.fromThrowable(ex).getCode() != Status.Code.UNAVAILABLE) {
+                            throw ex;
+                        }
+                        shed.incrementAndGet();
+                        Thread.sleep(BACKOFF_MILLIS);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return new Result(impl.drain(), latency, shed.get());
+    }
+
+    private void flatPastSaturation(Limit limit) throws Exception {
+        Work work = start(limit);
+        load(work, CAPACITY * 2, 2000);
+        Result normal = load(work, CAPACITY, 3000);
+        Result overload = load(work, CAPACITY * 16, 3000);
+        AdaptiveLimiter limiter = loopback.getServer().getLimiter();
+        assertTrue(limit + " excess calls should be shed, " + overload + ", " + limiter, overload.shed > 0);
+        assertTrue(limit + " p99 should stay flat past saturation, normal: " + normal + ", overload: " + overload + ", " + limiter,
+                overload.p99() < normal.p99() * 4);
+    }
+
+    @Test
+    public void vegas() throws Exception {
+        flatPastSaturation(Limit.VEGAS);
+    }
+
+    @Test
+    public void gradient() throws Exception {
+        flatPastSaturation(Limit.GRADIENT);
+    }
+
+    /**
+     * the reference without limit, the p99 grows with the callers
+     */
+    @Test
+    public void none() throws Exception {
+        Work work = start(Limit.NONE);
+        Result normal = load(work, CAPACITY, 2000);
+        Result overload = load(work, CAPACITY * 16, 2000);
+        assertEquals("NONE should NOT shed", 0, overload.shed);
+        assertTrue("NONE p99 should grow past saturation, normal: " + normal + ", overload: " + overload,
+                overload.p99() > normal.p99() * 4);
+    }
+
+}
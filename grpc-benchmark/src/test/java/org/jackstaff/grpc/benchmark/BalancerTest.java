@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.Client;
+import org.jackstaff.grpc.Server;
+import org.jackstaff.grpc.Status;
+import org.jackstaff.grpc.configuration.Balancer;
+import org.jackstaff.grpc.configuration.ClientConfig;
+import org.jackstaff.grpc.configuration.ServerConfig;
+import org.jackstaff.grpc.exception.ValidationException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * the client's balancers over several loopback servers (endpoints of one authority)
+ * @author reco@jackstaff.org
+ */
+public class BalancerTest {
+
+    private static final String AUTHORITY = "endpoints";
+
+    public interface Backend {
+
+        String call(String name);
+
+    }
+
+    /**
+     * counts the calls, each takes "millis", or fails with the status
+     */
+    public static class BackendImpl implements Backend {
+
+        private final long millis;
+        private final Status status;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        BackendImpl(long millis, Status status) {
+            this.millis = millis;
+            this.status = status;
+        }
+
+        @Override
+        public String call(String name) {
+            calls.incrementAndGet();
+            if (status != null) {
+                throw status.withDescription("backend down").asRuntimeException();
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return name;
+        }
+
+    }
+
+    public interface Chat {
+
+        String hold(String name);
+
+        Consumer<String> chat(Consumer<String> replies);
+
+    }
+
+    /**
+     * hold() blocks till released, chat() keeps the stream open
+     */
+    public static class ChatImpl implements Chat {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger held = new AtomicInteger();
+
+        @Override
+        public String hold(String name) {
+            held.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return name;
+        }
+
+        @Override
+        public Consumer<String> chat(Consumer<String> replies) {
+            return replies;
+        }
+
+    }
+
+    private final List<Server> servers = new ArrayList<>();
+    private Client client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        servers.forEach(Server::shutdown);
+    }
+
+    private Backend start(Balancer balancer, BackendImpl... backends) {
+        List<String> endpoints = new ArrayList<>();
+        for (BackendImpl backend : backends) {
+            Server server = new Server();
+            server.register(Backend.class, backend, Collections.emptyList());
+            int port = Loopback.freePort();
+            server.start(new ServerConfig(port));
+            servers.add(server);
+            endpoints.add("127.0.0.1:" + port);
+        }
+        ClientConfig cfg = new ClientConfig();
+        cfg.setEndpoints(endpoints);
+        cfg.setPlaintext(true);
+        cfg.setBalancer(balancer);
+        client = new Client();
+        client.setup(AUTHORITY, cfg);
+        return client.autowired(AUTHORITY, Backend.class);
+    }
+
+    /**
+     * "threads" callers for "millis", the failed calls are ignored
+     */
+    private static void load(Backend backend, int threads, long millis) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < end) {
+                    try {
+                        backend.call("jackstaff");
+                    } catch (RuntimeException ignore) {
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(millis + 10_000, TimeUnit.MILLISECONDS));
+    }
+
+    private static int total(BackendImpl... backends) {
+        return Arrays.stream(backends).mapToInt(backend -> backend.calls.get()).sum();
+    }
+
+    @Test
+    public void roundRobinSpread() {
+        BackendImpl[] backends = {new BackendImpl(0, null), new BackendImpl(0, null), new BackendImpl(0, null)};
+        Backend backend = start(Balancer.ROUND_ROBIN, backends);
+        for (int i = 0; i < 300; i++) {
+            assertEquals("jackstaff", backend.call("jackstaff"));
+        }
+        for (BackendImpl impl : backends) {
+            assertEquals(100, impl.calls.get());
+        }
+    }
+
+    private void avoidSlow(Balancer balancer) throws Exception {
+        BackendImpl slow = new BackendImpl(50, null);
+        BackendImpl[] backends = {slow, new BackendImpl(2, null), new BackendImpl(2, null)};
+        load(start(balancer, backends), 6, 3000);
+        int total = total(backends);
+        assertTrue(balancer + " slow endpoint got " + slow.calls.get() + " of " + total + " calls",
+                slow.calls.get() * 10 < total);
+    }
+
+    @Test
+    public void leastRequestAvoidSlow() throws Exception {
+        avoidSlow(Balancer.LEAST_REQUEST);
+    }
+
+    @Test
+    public void powerOfTwoChoicesAvoidSlow() throws Exception {
+        avoidSlow(Balancer.POWER_OF_TWO_CHOICES);
+    }
+
+    @Test
+    public void drainUnavailable() {
+        BackendImpl down = new BackendImpl(0, Status.UNAVAILABLE);
+        BackendImpl[] backends = {down, new BackendImpl(0, null), new BackendImpl(0, null)};
+        Backend backend = start(Balancer.LEAST_REQUEST, backends);
+        int failures = 0;
+        for (int i = 0; i < 300; i++) {
+            try {
+                backend.call("jackstaff");
+            } catch (RuntimeException ex) {
+                assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(ex).getCode());
+                failures++;
+            }
+        }
+        assertEquals(down.calls.get(), failures);
+        assertTrue("the UNAVAILABLE endpoint got " + down.calls.get() + " of 300 calls", down.calls.get() < 10);
+    }
+
+    @Test
+    public void unaryApartFromStreams() throws Exception {
+        ChatImpl impl = new ChatImpl();
+        Loopback loopback = new Loopback().register(Chat.class, impl);
+        loopback.getClientConfig().setChannels(2);
+        loopback.start();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Chat chat = loopback.autowired(Chat.class);
+            Consumer<String> stream = chat.chat(reply -> {
+            });
+            stream.accept("hello");
+            for (int i = 1; i <= 2; i++) {
+                executor.execute(() -> chat.hold("jackstaff"));
+                long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (impl.held.get() < i && System.nanoTime() < end) {
+                    Thread.sleep(5);
+                }
+            }
+            assertEquals(2, impl.held.get());
+            //the stream on the first channel, both unary calls on the second
+            assertArrayEquals(new int[]{1, 2}, loopback.getClient().inFlight(Loopback.AUTHORITY));
+        } finally {
+            impl.release.countDown();
+            executor.shutdown();
+            loopback.shutdown();
+        }
+    }
+
+    @Test(expected = ValidationException.class)
+    public void rejectBadPort() {
+        ClientConfig cfg = new ClientConfig();
+        cfg.setEndpoints(Arrays.asList("127.0.0.1:9000", "127.0.0.1:abc"));
+        cfg.setPlaintext(true);
+        new Client().setup("bad", cfg);
+    }
+
+}
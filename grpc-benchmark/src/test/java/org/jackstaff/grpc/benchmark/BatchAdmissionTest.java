@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.Status;
+import org.jackstaff.grpc.annotation.Batch;
+import org.jackstaff.grpc.annotation.MaxConcurrency;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * the calls of the batch stream (@Batch) are admitted by the bulkheads like the single calls
+ * @author reco@jackstaff.org
+ */
+public class BatchAdmissionTest {
+
+    public interface Slow {
+
+        @Batch(window = 50, size = 4)
+        String slow(String name);
+
+    }
+
+    public static class SlowImpl implements Slow {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        @MaxConcurrency(1)
+        public String slow(String name) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return "ok " + name;
+        }
+
+    }
+
+    private Loopback loopback;
+    private ExecutorService callers;
+
+    @After
+    public void tearDown() {
+        if (callers != null) {
+            callers.shutdownNow();
+        }
+        if (loopback != null) {
+            loopback.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectOverBulkhead() throws Exception {
+        SlowImpl impl = new SlowImpl();
+        loopback = new Loopback().register(Slow.class, impl).start();
+        Slow slow = loopback.autowired(Slow.class);
+        callers = Executors.newFixedThreadPool(4);
+        List<Future<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String name = "jackstaff" + i;
+            calls.add(callers.submit(() -> slow.slow(name)));
+        }
+        int ok = 0, rejected = 0;
+        for (Future<String> call : calls) {
+            try {
+                call.get(5, TimeUnit.SECONDS);
+                ok++;
+            } catch (ExecutionException ex) {
+                assertEquals(Status.Code.RESOURCE_EXHAUSTED, Status.fromThrowable(ex.getCause()).getCode());
+                rejected++;
+            }
+        }
+        assertEquals(1, impl.maxInFlight.get());
+        assertTrue("ok " + ok, ok >= 1);
+        assertTrue("rejected " + rejected, rejected >= 1);
+        assertEquals(4, ok + rejected);
+        assertEquals("released after the batch, admit the next call", "ok again", slow.slow("again"));
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.Circuit;
+import org.jackstaff.grpc.Status;
+import org.jackstaff.grpc.annotation.CircuitBreaker;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * the circuit breaker (client side) opened by the slow calls, only if its slow call rate is under 100
+ * @author reco@jackstaff.org
+ */
+public class CircuitBreakerTest {
+
+    public interface Slow {
+
+        @CircuitBreaker(slowCall = 1, window = 10, minCalls = 5)
+        String slowByDefault(String name);
+
+        @CircuitBreaker(slowCallRate = 50, slowCall = 1, window = 10, minCalls = 5)
+        String slowOverRate(String name);
+
+    }
+
+    public static class SlowImpl implements Slow {
+
+        private static String sleep(String name) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok " + name;
+        }
+
+        @Override
+        public String slowByDefault(String name) {
+            return sleep(name);
+        }
+
+        @Override
+        public String slowOverRate(String name) {
+            return sleep(name);
+        }
+
+    }
+
+    private Loopback loopback;
+
+    @After
+    public void tearDown() {
+        if (loopback != null) {
+            loopback.shutdown();
+        }
+    }
+
+    private Slow start() {
+        loopback = new Loopback().register(Slow.class, new SlowImpl()).start();
+        return loopback.autowired(Slow.class);
+    }
+
+    @Test
+    public void notOpenBySlowCallsByDefault() {
+        Slow slow = start();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("ok jackstaff", slow.slowByDefault("jackstaff"));
+        }
+        for (Circuit circuit : loopback.getClient().getCircuits().values()) {
+            assertEquals(circuit.toString(), Circuit.State.CLOSED, circuit.getState());
+            assertEquals(circuit.toString(), 0, circuit.getOpened());
+        }
+    }
+
+    @Test
+    public void openBySlowCallsOverRate() {
+        Slow slow = start();
+        int rejected = 0;
+        for (int i = 0; i < 20; i++) {
+            try {
+                slow.slowOverRate("jackstaff");
+            } catch (RuntimeException ex) {
+                assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(ex).getCode());
+                rejected++;
+            }
+        }
+        assertEquals(15, rejected);
+    }
+
+}
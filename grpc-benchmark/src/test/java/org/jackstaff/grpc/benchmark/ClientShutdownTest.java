@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.configuration.Transport;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * the client's shutdown let the in-flight calls complete, on its own event loops
+ * @author reco@jackstaff.org
+ */
+public class ClientShutdownTest {
+
+    public interface Slow {
+
+        String slow(String name);
+
+    }
+
+    public static class SlowImpl implements Slow {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        @Override
+        public String slow(String name) {
+            started.countDown();
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok " + name;
+        }
+
+    }
+
+    private Loopback loopback;
+    private ExecutorService callers;
+
+    @After
+    public void tearDown() {
+        if (callers != null) {
+            callers.shutdownNow();
+        }
+        if (loopback != null) {
+            loopback.getServer().shutdown();
+        }
+    }
+
+    @Test
+    public void completeInFlightCall() throws Exception {
+        SlowImpl impl = new SlowImpl();
+        loopback = new Loopback().transport(Transport.NIO).register(Slow.class, impl).start();
+        Slow slow = loopback.autowired(Slow.class);
+        callers = Executors.newSingleThreadExecutor();
+        Future<String> call = callers.submit(() -> slow.slow("jackstaff"));
+        assertTrue("the call reached the server", impl.started.await(5, TimeUnit.SECONDS));
+        loopback.getClient().shutdown();
+        assertEquals("ok jackstaff", call.get(10, TimeUnit.SECONDS));
+    }
+
+}
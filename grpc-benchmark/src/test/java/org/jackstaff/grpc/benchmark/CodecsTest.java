@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.Packet;
+import org.jackstaff.grpc.PacketCodec;
+import org.jackstaff.grpc.Status;
+import org.jackstaff.grpc.kryo.KryoCodec;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * the (v1) Packet codecs the server accept, and the classes the kryo codec read
+ * @author reco@jackstaff.org
+ */
+public class CodecsTest {
+
+    public static class Registered {
+
+        private String name;
+
+    }
+
+    public static class Unregistered {
+
+        private String name;
+
+    }
+
+    public interface Codecs {
+
+        Registered registered(Registered value);
+
+        Unregistered unregistered(Unregistered value);
+
+        String fail(String message);
+
+    }
+
+    public static class CodecsImpl implements Codecs {
+
+        @Override
+        public Registered registered(Registered value) {
+            return value;
+        }
+
+        @Override
+        public Unregistered unregistered(Unregistered value) {
+            return value;
+        }
+
+        @Override
+        public String fail(String message) {
+            throw Status.FAILED_PRECONDITION.withDescription(message).asRuntimeException();
+        }
+
+    }
+
+    private Loopback loopback;
+
+    @After
+    public void tearDown() {
+        if (loopback != null) {
+            loopback.shutdown();
+        }
+    }
+
+    private Codecs start(String... codecs) {
+        KryoCodec.register(Registered.class);
+        loopback = new Loopback().register(Codecs.class, new CodecsImpl());
+        loopback.getClientConfig().setCodec(KryoCodec.KRYO);
+        if (codecs.length > 0) {
+            loopback.getServerConfig().setCodecs(Arrays.asList(codecs));
+        }
+        return loopback.start().autowired(Codecs.class);
+    }
+
+    private static Registered registered(String name) {
+        Registered value = new Registered();
+        value.name = name;
+        return value;
+    }
+
+    @Test
+    public void rejectNotListed() {
+        Codecs codecs = start();
+        try {
+            codecs.registered(registered("jackstaff"));
+            fail("kryo is NOT listed, should fail");
+        } catch (RuntimeException ex) {
+            assertEquals(Status.Code.UNIMPLEMENTED, Status.fromThrowable(ex).getCode());
+        }
+    }
+
+    @Test
+    public void acceptListed() {
+        Codecs codecs = start(PacketCodec.PROTOSTUFF, KryoCodec.KRYO);
+        assertEquals("jackstaff", codecs.registered(registered("jackstaff")).name);
+    }
+
+    @Test
+    public void rejectUnregisteredClass() {
+        Codecs codecs = start(KryoCodec.KRYO);
+        Unregistered value = new Unregistered();
+        value.name = "jackstaff";
+        try {
+            codecs.unregistered(value);
+            fail("Unregistered is NOT registered, should fail");
+        } catch (RuntimeException ex) {
+            assertTrue(Status.fromThrowable(ex).getCode() != Status.Code.OK);
+        }
+    }
+
+    @Test
+    public void exceptionAsStatus() {
+        Codecs codecs = start(KryoCodec.KRYO);
+        try {
+            codecs.fail("jackstaff");
+            fail("should fail");
+        } catch (RuntimeException ex) {
+            assertEquals(Status.Code.FAILED_PRECONDITION, Status.fromThrowable(ex).getCode());
+            assertEquals("jackstaff", Status.fromThrowable(ex).getDescription());
+        }
+    }
+
+    @Test
+    public void encodeExceptionAsStatus() {
+        PacketCodec codec = new KryoCodec();
+        Object payload = codec.decode(codec.encode(new Packet<>(1,
+                Status.NOT_FOUND.withDescription("jackstaff").asRuntimeException()))).getPayload();
+        assertEquals(Status.Code.NOT_FOUND, Status.fromThrowable((Throwable) payload).getCode());
+        assertEquals("jackstaff", Status.fromThrowable((Throwable) payload).getDescription());
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import com.google.protobuf.ByteString;
+import io.grpc.KnownLength;
+import io.grpc.StatusRuntimeException;
+import org.jackstaff.grpc.internal.InternalProto;
+import org.jackstaff.grpc.internal.PacketMarshaller;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * the Internal service's marshaller read the data field from the inbound stream, the other layouts by protobuf
+ * @author reco@jackstaff.org
+ */
+public class PacketMarshallerTest {
+
+    /**
+     * like the inbound message of grpc
+     */
+    private static final class Inbound extends ByteArrayInputStream implements KnownLength {
+
+        Inbound(byte[] bytes) {
+            super(bytes);
+        }
+
+    }
+
+    private static final PacketMarshaller MARSHALLER = (PacketMarshaller) PacketMarshaller.getUnaryMethod().getRequestMarshaller();
+
+    private static byte[] bytes(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        for (int count; (count = stream.read(buffer)) >= 0; ) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteString data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return ByteString.copyFrom(data);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        for (int size : new int[]{0, 1, 127, 128, 300, 70000}) {
+            InternalProto.Packet packet = InternalProto.Packet.newBuilder().setData(data(size)).build();
+            byte[] wire = bytes(MARSHALLER.stream(packet));
+            assertArrayEquals(packet.toByteArray(), wire);
+            assertEquals(packet, MARSHALLER.parse(new Inbound(wire)));
+            assertEquals(packet, MARSHALLER.parse(new ByteArrayInputStream(wire)));
+        }
+    }
+
+    @Test
+    public void parseUnknownFieldByProtobuf() throws IOException {
+        InternalProto.Packet packet = InternalProto.Packet.newBuilder().setData(data(300)).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(packet.toByteArray());
+        out.write(new byte[]{16, 42}); //field 2, varint 42
+        InternalProto.Packet parsed = MARSHALLER.parse(new Inbound(out.toByteArray()));
+        assertEquals(packet.getData(), parsed.getData());
+        out.reset();
+        out.write(new byte[]{16, 42});
+        out.write(packet.toByteArray());
+        assertEquals(packet.getData(), MARSHALLER.parse(new Inbound(out.toByteArray())).getData());
+    }
+
+    @Test(expected = StatusRuntimeException.class)
+    public void rejectLengthOverFrame() {
+        MARSHALLER.parse(new Inbound(new byte[]{10, (byte) 0xFF, (byte) 0xFF, 0x7F, 1, 2, 3}));
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.benchmark;
+
+import org.jackstaff.grpc.Client;
+import org.jackstaff.grpc.Status;
+import org.jackstaff.grpc.configuration.ClientConfig;
+import org.jackstaff.grpc.configuration.RetryConfig;
+import org.jackstaff.grpc.exception.ValidationException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * the client config's retry policy against a flaky server (v1, the Internal service)
+ * @author reco@jackstaff.org
+ */
+public class RetryPoliciesTest {
+
+    public interface Flaky {
+
+        String call(String name);
+
+    }
+
+    /**
+     * fails the first "failures" calls with the status
+     */
+    public static class FlakyImpl implements Flaky {
+
+        private final AtomicInteger failures;
+        private final Status status;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        FlakyImpl(int failures, Status status) {
+            this.failures = new AtomicInteger(failures);
+            this.status = status;
+        }
+
+        @Override
+        public String call(String name) {
+            calls.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                throw status.withDescription("flaky").asRuntimeException();
+            }
+            return "ok " + name;
+        }
+
+    }
+
+    private Loopback loopback;
+
+    @After
+    public void tearDown() {
+        if (loopback != null) {
+            loopback.shutdown();
+        }
+    }
+
+    private static RetryConfig policy(String... codes) {
+        RetryConfig retry = new RetryConfig();
+        retry.setName("Internal");
+        retry.setMaxAttempts(3);
+        retry.setInitialBackoff(10);
+        retry.setMaxBackoff(50);
+        if (codes.length > 0) {
+            retry.setRetryableStatusCodes(Arrays.asList(codes));
+        }
+        return retry;
+    }
+
+    private Flaky start(FlakyImpl impl, RetryConfig retry) {
+        loopback = new Loopback().register(Flaky.class, impl);
+        if (retry != null) {
+            loopback.getClientConfig().setRetryPolicies(Collections.singletonList(retry));
+        }
+        return loopback.start().autowired(Flaky.class);
+    }
+
+    @Test
+    public void retryUnavailable() {
+        FlakyImpl impl = new FlakyImpl(2, Status.UNAVAILABLE);
+        assertEquals("ok jackstaff", start(impl, policy()).call("jackstaff"));
+        assertEquals(3, impl.calls.get());
+    }
+
+    @Test
+    public void failWithoutPolicy() {
+        FlakyImpl impl = new FlakyImpl(1, Status.UNAVAILABLE);
+        Flaky flaky = start(impl, null);
+        try {
+            flaky.call("jackstaff");
+            fail("NOT retried, should fail");
+        } catch (RuntimeException ex) {
+            assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(ex).getCode());
+        }
+        assertEquals(1, impl.calls.get());
+    }
+
+    @Test
+    public void notRetryNonRetryableCode() {
+        FlakyImpl impl = new FlakyImpl(1, Status.INTERNAL);
+        Flaky flaky = start(impl, policy("unavailable"));
+        try {
+            flaky.call("jackstaff");
+            fail("INTERNAL is NOT retryable, should fail");
+        } catch (RuntimeException ex) {
+            assertEquals(Status.Code.INTERNAL, Status.fromThrowable(ex).getCode());
+        }
+        assertEquals(1, impl.calls.get());
+    }
+
+    @Test
+    public void giveUpAfterMaxAttempts() {
+        FlakyImpl impl = new FlakyImpl(5, Status.UNAVAILABLE);
+        Flaky flaky = start(impl, policy());
+        try {
+            flaky.call("jackstaff");
+            fail("fails more than maxAttempts, should fail");
+        } catch (RuntimeException ex) {
+            assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(ex).getCode());
+        }
+        assertEquals(3, impl.calls.get());
+    }
+
+    @Test(expected = ValidationException.class)
+    public void rejectUnknownCode() {
+        ClientConfig cfg = new ClientConfig();
+        cfg.setRetryPolicies(Collections.singletonList(policy("UNAVAILABLE", "NOT_A_CODE")));
+        new Client().setup("bad", cfg);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void rejectOkCode() {
+        ClientConfig cfg = new ClientConfig();
+        cfg.setRetryPolicies(Collections.singletonList(policy("OK")));
+        new Client().setup("bad", cfg);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void rejectMaxTokensOverBound() {
+        ClientConfig cfg = new ClientConfig();
+        cfg.setRetryPolicies(Collections.singletonList(policy()));
+        cfg.setRetryTokenRatio(0.1);
+        cfg.setRetryMaxTokens(1001);
+        new Client().setup("bad", cfg);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void rejectNegativeTokenRatio() {
+        ClientConfig cfg = new ClientConfig();
+        cfg.setRetryPolicies(Collections.singletonList(policy()));
+        cfg.setRetryTokenRatio(-1);
+        new Client().setup("bad", cfg);
+    }
+
+}
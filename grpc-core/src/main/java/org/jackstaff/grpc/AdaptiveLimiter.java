@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import org.jackstaff.grpc.configuration.Limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the adaptive in-flight limit of the server's UNARY calls, adjusted from the observed RTT (lock free),
+ * the calls over the limit are shed at once with UNAVAILABLE (retriable).
+ * @author reco@jackstaff.org
+ * @see Limit
+ */
+public final class AdaptiveLimiter {
+
+    private static final int MIN_LIMIT = 4;
+    private static final int INITIAL_LIMIT = 20;
+    private static final int PROBE_SAMPLES = 1000;
+    private static final double SMOOTHING = 0.2;
+
+    private final Limit algorithm;
+    private final int maxLimit;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLong limit = new AtomicLong(Double.doubleToLongBits(INITIAL_LIMIT));
+    private final AtomicLong windowMinRtt = new AtomicLong(Long.MAX_VALUE);
+    private volatile long lastWindowMinRtt = Long.MAX_VALUE;
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    AdaptiveLimiter(Limit algorithm, int maxLimit) {
+        this.algorithm = algorithm;
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+    }
+
+    /**
+     * @return the start time (nanos) of the admitted call, or -1 if it's shed
+     */
+    long acquire() {
+        int limit = getLimit();
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                shed.incrementAndGet();
+                return -1;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * @param start the start time of acquire
+     * @param sample the call completed normally, its RTT is a sample. the failed/cancelled calls are NOT
+     */
+    void release(long start, boolean sample) {
+        int current = inflight.getAndDecrement();
+        if (!sample) {
+            return;
+        }
+        long rtt = Math.max(1, System.nanoTime() - start);
+        windowMinRtt.accumulateAndGet(rtt, Math::min);
+        if (samples.incrementAndGet() % PROBE_SAMPLES == 0) {
+            lastWindowMinRtt = windowMinRtt.getAndSet(Long.MAX_VALUE);
+        }
+        double ratio = (double) minRtt() / rtt;
+        boolean appLimited = current * 2 < getLimit();
+        limit.updateAndGet(bits -> Double.doubleToLongBits(next(Double.longBitsToDouble(bits), ratio, appLimited)));
+    }
+
+    /**
+     * the min RTT of this and the last window of PROBE_SAMPLES samples, a lasting RTT change is picked up in two windows,
+     * a single fast (or slow) sample does NOT become the no load RTT
+     */
+    private long minRtt() {
+        return Math.min(lastWindowMinRtt, windowMinRtt.get());
+    }
+
+    private double next(double limit, double ratio, boolean appLimited) {
+        double next;
+        if (algorithm == Limit.VEGAS) {
+            double queue = limit * (1 - ratio);
+            double log = Math.max(1, Math.log10(limit));
+            if (queue <= 3 * log && !appLimited) {
+                next = limit + log;
+            } else if (queue > 6 * log) {
+                next = limit - log;
+            } else {
+                return limit;
+            }
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, ratio));
+            next = limit * (1 - SMOOTHING) + (limit * gradient + (appLimited ? 0 : Math.sqrt(limit))) * SMOOTHING;
+        }
+        return Math.max(MIN_LIMIT, Math.min(maxLimit, next));
+    }
+
+    public Limit getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getShed() {
+        return shed.get();
+    }
+
+    /**
+     * @return the no load RTT (nanos) estimate
+     */
+    public long getMinRtt() {
+        long rtt = minRtt();
+        return rtt == Long.MAX_VALUE ? 0 : rtt;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveLimiter{" +
+                "algorithm=" + algorithm +
+                ", limit=" + getLimit() +
+                ", inflight=" + getInflight() +
+                ", shed=" + getShed() +
+                ", minRtt=" + getMinRtt() +
+                '}';
+    }
+
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import io.grpc.Deadline;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.jackstaff.grpc.annotation.Batch;
+import org.jackstaff.grpc.internal.HeaderMetadata;
+import org.jackstaff.grpc.internal.InternalProto;
+import org.jackstaff.grpc.internal.PacketMarshaller;
+import org.jackstaff.grpc.internal.Stub;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * the micro batches of one (v1) UNARY method: the calls are collected for "window" or till "size",
+ * and sent as one Packet(batch id, Call[]) over a long-lived Internal bidi stream,
+ * the server admit each call like a single one (the adaptive limit, the bulkheads), run it on its executor,
+ * and reply one Packet(batch id, Result) per call as soon as it's done, RESOURCE_EXHAUSTED if it's NOT admitted.
+ * the batches wait while the stream is NOT ready, a batch is failed by the stream's error or its timeout.
+ * @author reco@jackstaff.org
+ * @see Batch
+ */
+final class Batcher {
+
+    static final String SIGN = "/jackstaff/batch";
+
+    private static final class Timer {
+
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jackstaff-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    }
+
+    static final class Call {
+
+        private String sign;
+        private Object[] args;
+
+        Call() {
+        }
+
+        Call(String sign, Object[] args) {
+            this.sign = sign;
+            this.args = args;
+        }
+
+    }
+
+    static final class Result {
+
+        private int index;
+        private int code;
+        private String description;
+        private Object value;
+
+        Result() {
+        }
+
+        Result(int index, int code, String description, Object value) {
+            this.index = index;
+            this.code = code;
+            this.description = description;
+            this.value = value;
+        }
+
+    }
+
+    /**
+     * the server side admission of a batched call, like the one of a single UNARY call
+     */
+    interface Admitter {
+
+        /**
+         * @param descriptor the method of the call
+         * @param run run the call once it's admitted, its argument must be called once when the call is done (OK or not)
+         * @param reject called with the reason if the call is NOT admitted
+         */
+        void admit(MethodDescriptor descriptor, Consumer<Consumer<Boolean>> run, Consumer<String> reject);
+
+    }
+
+    /**
+     * the calls of one sent batch, till all of them are answered, or the batch is failed
+     */
+    private static final class Pending {
+
+        private final List<CompletableFuture<Object>> futures;
+        private final AtomicInteger remaining;
+        private ScheduledFuture<?> timeout;
+
+        Pending(List<CompletableFuture<Object>> futures) {
+            this.futures = futures;
+            this.remaining = new AtomicInteger(futures.size());
+        }
+
+    }
+
+    private final MethodDescriptor descriptor;
+    private final Stub<?, Packet<?>, Packet<?>> template;
+    private final long window;
+    private final int size;
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+    private final Queue<Packet<?>> backlog = new ArrayDeque<>();
+    private List<Call> calls = new ArrayList<>();
+    private List<CompletableFuture<Object>> futures = new ArrayList<>();
+    private Deadline deadline;
+    private boolean unbounded;
+    private ScheduledFuture<?> flush;
+    private StreamObserver<Packet<?>> stream;
+    private ClientCallStreamObserver<?> ready;
+
+    Batcher(MethodDescriptor descriptor, Stub<?, Packet<?>, Packet<?>> template, Batch config) {
+        this.descriptor = descriptor;
+        this.template = template;
+        this.window = Math.max(1, config.window());
+        this.size = Math.max(1, config.size());
+    }
+
+    /**
+     * queue the call into the current batch, wait for its result till the call's deadline, resolved as the RPC's
+     * @param stub the call's stub
+     * @param args the call's arguments
+     */
+    Object call(Stub<?, ?, ?> stub, Object[] args) throws Exception {
+        Deadline callDeadline = stub.deadline(null);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        List<Call> full = null;
+        List<CompletableFuture<Object>> fullFutures = null;
+        Deadline fullDeadline = null;
+        synchronized (this) {
+            calls.add(new Call(descriptor.getSign(), Packet.boxing(args).getPayload()));
+            futures.add(future);
+            unbounded |= callDeadline == null;
+            if (callDeadline != null && (deadline == null || deadline.isBefore(callDeadline))) {
+                deadline = callDeadline;
+            }
+            if (calls.size() >= size) {
+                full = calls;
+                fullFutures = futures;
+                fullDeadline = unbounded ? null : deadline;
+                reset();
+            } else if (flush == null) {
+                flush = Timer.SCHEDULER.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            send(full, fullFutures, fullDeadline);
+        }
+        return await(future, callDeadline);
+    }
+
+    private void reset() {
+        calls = new ArrayList<>();
+        futures = new ArrayList<>();
+        deadline = null;
+        unbounded = false;
+        if (flush != null) {
+            flush.cancel(false);
+            flush = null;
+        }
+    }
+
+    private void flush() {
+        List<Call> batch;
+        List<CompletableFuture<Object>> batchFutures;
+        Deadline batchDeadline;
+        synchronized (this) {
+            if (calls.isEmpty()) {
+                return;
+            }
+            batch = calls;
+            batchFutures = futures;
+            batchDeadline = unbounded ? null : deadline;
+            flush = null;
+            reset();
+        }
+        send(batch, batchFutures, batchDeadline);
+    }
+
+    /**
+     * @param batchDeadline the latest deadline of the batch's calls, null if any of them has none
+     */
+    private void send(List<Call> batch, List<CompletableFuture<Object>> batchFutures, Deadline batchDeadline) {
+        int id = ids.incrementAndGet();
+        Pending entry = new Pending(batchFutures);
+        pending.put(id, entry);
+        if (batchDeadline != null) {
+            entry.timeout = Timer.SCHEDULER.schedule(() -> fail(id, Status.DEADLINE_EXCEEDED.withDescription("batch timeout").asRuntimeException()),
+                    batchDeadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        }
+        try {
+            synchronized (this) {
+                stream();
+                backlog.add(new Packet<>(id, batch.toArray()));
+                drain();
+            }
+        } catch (Exception ex) {
+            fail(id, ex);
+        }
+    }
+
+    /**
+     * send the waiting batches while the stream is ready, the failed(timeout) ones are dropped
+     */
+    private synchronized void drain() {
+        while (stream != null && (ready == null || ready.isReady()) && !backlog.isEmpty()) {
+            Packet<?> packet = backlog.poll();
+            if (pending.containsKey(packet.getCommand())) {
+                stream.onNext(packet);
+            }
+        }
+    }
+
+    private StreamObserver<Packet<?>> stream() {
+        if (stream == null) {
+            Stub<?, Packet<?>, Packet<?>> stub = new Stub<>(template);
+            stub.attach(HeaderMetadata.ROOT, SIGN);
+            stream = stub.asyncBidiStreaming(PacketMarshaller.getBidiStreamingMethod(), new ClientResponseObserver<Object, Packet<?>>() {
+
+                @Override
+                public void beforeStart(ClientCallStreamObserver<Object> requestStream) {
+                    ready = requestStream;
+                    requestStream.setOnReadyHandler(Batcher.this::drain);
+                }
+
+                @Override
+                public void onNext(Packet<?> packet) {
+                    complete(packet);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    close(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    close(Status.UNAVAILABLE.withDescription("batch stream completed").asRuntimeException());
+                }
+
+            });
+        }
+        return stream;
+    }
+
+    private void complete(Packet<?> packet) {
+        Pending entry = pending.get(packet.getCommand());
+        Result result = (Result) packet.getPayload();
+        if (entry == null || result == null || result.index < 0 || result.index >= entry.futures.size()) {
+            return;
+        }
+        CompletableFuture<Object> future = entry.futures.get(result.index);
+        if (result.code != Status.OK.getCode()) {
+            future.completeExceptionally(Status.fromCodeValue(result.code).withDescription(result.description).asRuntimeException());
+        } else {
+            future.complete(result.value);
+        }
+        if (entry.remaining.decrementAndGet() == 0 && pending.remove(packet.getCommand(), entry) && entry.timeout != null) {
+            entry.timeout.cancel(false);
+        }
+    }
+
+    private void close(Throwable ex) {
+        synchronized (this) {
+            stream = null;
+            ready = null;
+            backlog.clear();
+        }
+        new ArrayList<>(pending.keySet()).forEach(id -> fail(id, ex));
+    }
+
+    private void fail(int id, Throwable ex) {
+        Optional.ofNullable(pending.remove(id)).ifPresent(entry -> {
+            if (entry.timeout != null) {
+                entry.timeout.cancel(false);
+            }
+            entry.futures.forEach(future -> future.completeExceptionally(ex));
+        });
+    }
+
+    private Object await(CompletableFuture<Object> future, Deadline deadline) throws Exception {
+        try {
+            return deadline != null ? future.get(deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS) : future.get();
+        } catch (TimeoutException ex) {
+            throw Status.DEADLINE_EXCEEDED.withDescription("batch wait timeout").asRuntimeException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * the server side of the batch stream, each call of a batch is admitted, run on the executor of its method,
+     * and answered as soon as it's done. the stream is completed after the last answer.
+     */
+    static StreamObserver<InternalProto.Packet> serve(Map<String, MethodDescriptor> methods, Admitter admitter,
+                                                      StreamObserver<InternalProto.Packet> observer) {
+        Transform<Packet<?>, InternalProto.Packet> transform = Transforms.getOrIdentityTransform(Packet.class);
+        return new StreamObserver<InternalProto.Packet>() {
+
+            private final AtomicInteger running = new AtomicInteger(1);
+            private volatile boolean cancelled;
+
+            private void reply(int id, Result result) {
+                synchronized (observer) {
+                    if (!cancelled) {
+                        observer.onNext(transform.build(new Packet<>(id, result)));
+                    }
+                }
+                done();
+            }
+
+            private void done() {
+                if (running.decrementAndGet() == 0) {
+                    synchronized (observer) {
+                        if (!cancelled) {
+                            observer.onCompleted();
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onNext(InternalProto.Packet value) {
+                Packet<?> packet = transform.from(value);
+                Object[] calls = (Object[]) packet.getPayload();
+                io.grpc.Context context = io.grpc.Context.current();
+                for (int i = 0; i < calls.length; i++) {
+                    int index = i;
+                    Call call = (Call) calls[i];
+                    MethodDescriptor descriptor = methods.get(call.sign);
+                    if (descriptor == null || descriptor.getMethodType() != MethodType.UNARY) {
+                        running.incrementAndGet();
+                        reply(packet.getCommand(), new Result(index, Status.INVALID_ARGUMENT.getCode(), "method Not found", null));
+                        continue;
+                    }
+                    running.incrementAndGet();
+                    context.run(() -> admitter.admit(descriptor, done -> invoke(descriptor, index, call, result -> {
+                        done.accept(result.code == Status.OK.getCode());
+                        reply(packet.getCommand(), result);
+                    }), reason -> reply(packet.getCommand(), new Result(index, Status.RESOURCE_EXHAUSTED.getCode(), reason, null))));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                cancelled = true;
+            }
+
+            @Override
+            public void onCompleted() {
+                done();
+            }
+
+        };
+    }
+
+    private static void invoke(MethodDescriptor descriptor, int index, Call call, Consumer<Result> reply) {
+        try {
+            Context context = new Context(descriptor, new Packet<>(0, call.args).unboxing(), descriptor.getBean());
+            Packet<?> result = Utils.walkThrough(context, descriptor.getInterceptors());
+            if (result.isException()) {
+                reply.accept(error(index, (Throwable) result.getPayload()));
+                return;
+            }
+            if (!descriptor.isFuture()) {
+                reply.accept(new Result(index, Status.OK.getCode(), null, result.getPayload()));
+                return;
+            }
+            ((CompletionStage<?>) result.getPayload()).whenComplete((value, ex) ->
+                    reply.accept(ex != null ? error(index, ex) : new Result(index, Status.OK.getCode(), null, value)));
+        } catch (Throwable ex) {
+            reply.accept(error(index, ex));
+        }
+    }
+
+    private static Result error(int index, Throwable ex) {
+        Status status = Status.fromThrowable(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+        return new Result(index, status.getCode(), status.getDescription(), null);
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc;
+
+import org.jackstaff.grpc.annotation.MaxConcurrency;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * the in-flight calls limit of one service or method at server side, the excess calls are rejected (RESOURCE_EXHAUSTED)
+ * @author reco@jackstaff.org
+ * @see MaxConcurrency
+ */
+public final class Bulkhead {
+
+    private static final class Waiter {
+
+        private final Runnable admit;
+        private final Executor executor;
+
+        Waiter(Runnable admit, Executor executor) {
+            this.admit = admit;
+            this.executor = executor;
+        }
+
+    }
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int maxQueue;
+    private final Queue<Waiter> waiting = new ArrayDeque<>();
+    private int running;
+    private long rejected;
+
+    Bulkhead(String name, int maxConcurrency, int maxQueue) {
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueue = Math.max(0, maxQueue);
+    }
+
+    /**
+     * @param admit run now if there is room, or later on the executor when an in-flight one is released
+     * @param executor where the queued call is admitted, NOT the releasing (transport) thread
+     * @return false if it's rejected
+     */
+    boolean acquire(Runnable admit, Executor executor) {
+        synchronized (this) {
+            if (running >= maxConcurrency) {
+                if (waiting.size() < maxQueue) {
+                    waiting.add(new Waiter(admit, executor));
+                    return true;
+                }
+                rejected++;
+                return false;
+            }
+            running++;
+        }
+        admit.run();
+        return true;
+    }
+
+    /**
+     * hand the slot to the next queued call
+     */
+    void release() {
+        Waiter next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+        if (next != null) {
+            try {
+                next.executor.execute(next.admit);
+            } catch (RejectedExecutionException ex) {
+                next.admit.run();
+            }
+        }
+    }
+
+    /**
+     * @return true if it's still waiting, and removed
+     */
+    synchronized boolean cancel(Runnable admit) {
+        return waiting.removeIf(waiter -> waiter.admit == admit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Bulkhead{" +
+                "name='" + name + '\'' +
+                ", running=" + running + "/" + maxConcurrency +
+                ", queued=" + waiting.size() + "/" + maxQueue +
+                ", rejected=" + rejected +
+                '}';
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import org.jackstaff.grpc.annotation.CircuitBreaker;
+import org.jackstaff.grpc.exception.ValidationException;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * the circuit breaker of one method of one authority, lock free:
+ * the count based sliding window is a ring of outcomes, the failure / slow counters follow the replaced slots.
+ * @author reco@jackstaff.org
+ * @see CircuitBreaker
+ */
+public final class Circuit {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int RECORDED = 1;
+    private static final int FAILURE = 2;
+    private static final int SLOW = 4;
+
+    /**
+     * the transient state between OPEN and HALF_OPEN, the probes are reset before HALF_OPEN is published
+     */
+    private static final int HALF_OPENING = State.values().length;
+
+    private final String name;
+    private final int failureRate;
+    private final int slowCallRate;
+    private final long slowCall;
+    /**
+     * the outcomes open the circuit: the failure, and the slow call unless the slow call rate is 100
+     */
+    private final int tripping;
+    private final int minCalls;
+    private final long openTime;
+    private final int probes;
+    private final Set<Integer> failureCodes;
+    private final AtomicIntegerArray window;
+    private final AtomicLong index = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger slows = new AtomicInteger();
+    private final AtomicInteger state = new AtomicInteger(State.CLOSED.ordinal());
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicInteger permits = new AtomicInteger();
+    private final AtomicInteger passed = new AtomicInteger();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    Circuit(String name, CircuitBreaker config) {
+        this.name = name;
+        this.failureRate = Math.max(1, config.failureRate());
+        this.slowCallRate = Math.max(1, config.slowCallRate());
+        this.slowCall = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.slowCall()));
+        this.tripping = slowCallRate < 100 ? FAILURE | SLOW : FAILURE;
+        this.window = new AtomicIntegerArray(Math.max(1, config.window()));
+        this.minCalls = Math.max(1, Math.min(config.minCalls(), window.length()));
+        this.openTime = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.openTime()));
+        this.probes = Math.max(1, config.probes());
+        this.failureCodes = Arrays.stream(config.failureCodes()).boxed().collect(Collectors.toSet());
+        if (failureCodes.contains(Status.Code.OK)) {
+            throw new ValidationException("circuit breaker " + name + " failure codes can't contain OK");
+        }
+    }
+
+    /**
+     * @return the state the call is admitted in, null if it's rejected (open)
+     */
+    State acquire() {
+        while (true) {
+            State current = getState();
+            switch (current) {
+                case CLOSED:
+                    return current;
+                case OPEN:
+                    if (System.nanoTime() - openedAt.get() < openTime) {
+                        rejected.incrementAndGet();
+                        return null;
+                    }
+                    if (state.compareAndSet(State.OPEN.ordinal(), HALF_OPENING)) {
+                        passed.set(0);
+                        permits.set(probes);
+                        state.set(State.HALF_OPEN.ordinal());
+                    }
+                    break;
+                case HALF_OPEN:
+                default:
+                    if (permits.getAndDecrement() > 0) {
+                        return current;
+                    }
+                    rejected.incrementAndGet();
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * @param admitted the state of acquire
+     * @param nanos the call's duration
+     * @param failure the call failed by the server/transport
+     */
+    void record(State admitted, long nanos, boolean failure) {
+        int outcome = RECORDED | (failure ? FAILURE : 0) | (nanos >= slowCall ? SLOW : 0);
+        if (admitted == State.HALF_OPEN) {
+            if ((outcome & tripping) != 0) {
+                open(State.HALF_OPEN);
+            } else if (passed.incrementAndGet() >= probes && transit(State.HALF_OPEN, State.CLOSED)) {
+                reset();
+            }
+            return;
+        }
+        int old = window.getAndSet((int) (index.getAndIncrement() % window.length()), outcome);
+        int calls = (old & RECORDED) == 0 ? this.calls.incrementAndGet() : this.calls.get();
+        int failures = this.failures.addAndGet(((outcome & FAILURE) != 0 ? 1 : 0) - ((old & FAILURE) != 0 ? 1 : 0));
+        int slows = this.slows.addAndGet(((outcome & SLOW) != 0 ? 1 : 0) - ((old & SLOW) != 0 ? 1 : 0));
+        if (calls >= minCalls && (failures * 100 >= failureRate * calls || ((tripping & SLOW) != 0 && slows * 100 >= slowCallRate * calls))) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        if (transit(from, State.OPEN)) {
+            openedAt.set(System.nanoTime());
+            opened.incrementAndGet();
+        }
+    }
+
+    private boolean transit(State from, State to) {
+        return state.compareAndSet(from.ordinal(), to.ordinal());
+    }
+
+    private void reset() {
+        for (int i = 0; i < window.length(); i++) {
+            window.set(i, 0);
+        }
+        calls.set(0);
+        failures.set(0);
+        slows.set(0);
+    }
+
+    /**
+     * @return true if the status is one of the failure codes (the server/transport's), NOT the application's
+     */
+    boolean isFailure(Throwable ex) {
+        return failureCodes.contains(Status.fromThrowable(ex).getCode());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        int state = this.state.get();
+        return state == HALF_OPENING ? State.OPEN : State.values()[state];
+    }
+
+    /**
+     * @return the failure rate of the sliding window, in percent
+     */
+    public int getFailureRate() {
+        int calls = this.calls.get();
+        return calls == 0 ? 0 : failures.get() * 100 / calls;
+    }
+
+    /**
+     * @return the slow call rate of the sliding window, in percent
+     */
+    public int getSlowCallRate() {
+        int calls = this.calls.get();
+        return calls == 0 ? 0 : slows.get() * 100 / calls;
+    }
+
+    /**
+     * @return how many times it's opened
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * @return the calls failed fast while it's open / half open
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Circuit{" +
+                "name='" + name + '\'' +
+                ", state=" + getState() +
+                ", failureRate=" + getFailureRate() +
+                ", slowCallRate=" + getSlowCallRate() +
+                ", opened=" + getOpened() +
+                ", rejected=" + getRejected() +
+                '}';
+    }
+
+}
@@ -18,9 +18,18 @@ package org.jackstaff.grpc;
 
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
 import io.grpc.stub.StreamObserver;
+import org.jackstaff.grpc.annotation.Batch;
+import org.jackstaff.grpc.annotation.CircuitBreaker;
+import org.jackstaff.grpc.annotation.ClientCache;
+import org.jackstaff.grpc.annotation.Hedge;
+import org.jackstaff.grpc.annotation.SingleFlight;
 import org.jackstaff.grpc.configuration.ClientConfig;
+import org.jackstaff.grpc.configuration.Transport;
 import org.jackstaff.grpc.exception.ValidationException;
+import org.jackstaff.grpc.internal.ChannelPool;
 import org.jackstaff.grpc.internal.HeaderMetadata;
 import org.jackstaff.grpc.internal.InternalProto;
 import org.jackstaff.grpc.internal.Stub;
@@ -30,8 +39,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -48,63 +60,170 @@ public class Client {
         Object newProxyInstance(Class<?> type, InvocationHandler handler);
     }
 
-    private static class MethodKey {
+    /**
+     * per method call path, resolved once at autowired time
+     */
+    private final class Invoker implements ProtocolProxy.Call {
 
-        private final Class<?> type;
-        private final Method method;
+        private final MethodDescriptor descriptor;
+        private final Stub<?,?,?> template;
+        private final List<Interceptor> interceptors;
+        private final ResponseCache cache;
+        private final Flights flights;
+        private final Batcher batcher;
+        private final Hedger hedger;
+        private final Circuit circuit;
 
-        public MethodKey(Class<?> type, Method method) {
-            this.type = type;
-            this.method = method;
+        Invoker(MethodDescriptor descriptor, Stub<?,?,?> template, List<Interceptor> interceptors, ResponseCache cache, Flights flights,
+                Batcher batcher, Hedger hedger, Circuit circuit) {
+            this.descriptor = descriptor;
+            this.template = template;
+            this.interceptors = interceptors;
+            this.cache = cache;
+            this.flights = flights;
+            this.batcher = batcher;
+            this.hedger = hedger;
+            this.circuit = circuit;
         }
 
         @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            MethodKey methodKey = (MethodKey) o;
-            return type.equals(methodKey.type) &&
-                    method.equals(methodKey.method);
+        public Object call(Object proxy, Object[] args) throws Exception {
+            if (cache != null) {
+                return cache.call(args, () -> walkThrough(this, proxy, args));
+            }
+            return walkThrough(this, proxy, args);
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(type, method);
-        }
     }
 
-    private final Set<Class<?>> types = ConcurrentHashMap.newKeySet();
-    private final Map<MethodKey, MethodDescriptor> methods = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<MethodDescriptor>> protocols = new ConcurrentHashMap<>();
     private final Map<String, Stub<?,?,?>> stubs = new ConcurrentHashMap<>();
+    private final Set<String> typed = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> codecs = new ConcurrentHashMap<>();
+    private final Map<String, ClientConfig> configs = new ConcurrentHashMap<>();
+    private final Map<String, Compression> compressions = new ConcurrentHashMap<>();
+    private final Map<String, ResponseCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, Flights> flights = new ConcurrentHashMap<>();
+    private final Map<String, Batcher> batchers = new ConcurrentHashMap<>();
+    private final Map<String, Hedger> hedgers = new ConcurrentHashMap<>();
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final Map<Boolean, EventLoopGroup> sharedEventLoops = new ConcurrentHashMap<>();
+    private final List<EventLoopGroup> eventLoops = new CopyOnWriteArrayList<>();
     private final ProxyCreator creator;
+    private final boolean generated;
 
     /**
-     * default, will use jdk's Proxy
+     * default, will use jdk's Proxy,
+     * the generated ProtocolProxy (by grpc-generator) is preferred when it's found
+     * @see ProtocolProxy
      */
     public Client() {
-        this((type, handler) -> Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler));
+        this((type, handler) -> Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler), true);
     }
 
     /**
-     * use provided ProxyCreator, like CGLib's Proxy
+     * use provided ProxyCreator, like CGLib's Proxy, always
      *
      * @param creator the creator
      */
     public Client(ProxyCreator creator) {
+        this(creator, false);
+    }
+
+    /**
+     * @param creator the creator, like CGLib's Proxy
+     * @param generated true: prefer the generated ProtocolProxy (by grpc-generator) to the creator when it's found
+     * @see ProtocolProxy
+     */
+    public Client(ProxyCreator creator, boolean generated) {
         this.creator = creator;
+        this.generated = generated;
     }
 
     public void setup(Map<String, ClientConfig> authorityClients) {
         authorityClients.forEach(this::setup);
     }
 
+    /**
+     * setup the client stubs, with the protocols of each authority (for the @Retry methods)
+     * @param authorityClients authority to client config
+     * @param authorityProtocols authority to its protocol interfaces
+     */
+    public void setup(Map<String, ClientConfig> authorityClients, Map<String, ? extends Collection<Class<?>>> authorityProtocols) {
+        authorityClients.forEach((authority, cfg) -> {
+            Collection<Class<?>> protocols = authorityProtocols.get(authority);
+            setup(authority, cfg, protocols != null ? protocols : Collections.emptyList());
+        });
+    }
+
     /**
      * setup the client stub
      * @param authority authority
      * @param cfg client config
      */
     public void setup(String authority, ClientConfig cfg) {
-        ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forAddress(cfg.getHost(), cfg.getPort());
+        setup(authority, cfg, Collections.emptyList());
+    }
+
+    /**
+     * setup the client stub, the retry policies of config and the protocols' @Retry methods are the channels' service config
+     * @param authority authority
+     * @param cfg client config
+     * @param protocols the protocol interfaces of this authority
+     */
+    public void setup(String authority, ClientConfig cfg, Collection<Class<?>> protocols) {
+        Map<String, Object> serviceConfig = RetryPolicies.serviceConfig(cfg, protocols.stream().
+                flatMap(type -> protocols(type).stream()).collect(Collectors.toList()));
+        List<String> endpoints = Optional.ofNullable(cfg.getEndpoints()).filter(list -> !list.isEmpty()).
+                orElseGet(() -> Collections.singletonList(cfg.getHost() + ":" + cfg.getPort()));
+        Map<String, List<ManagedChannel>> channels = new LinkedHashMap<>();
+        for (String endpoint : endpoints) {
+            int index = endpoint.lastIndexOf(':');
+            if (index <= 0) {
+                throw new ValidationException("client " + authority + " endpoint " + endpoint + " should be host:port");
+            }
+            int port;
+            try {
+                port = Integer.parseInt(endpoint.substring(index + 1).trim());
+            } catch (NumberFormatException ex) {
+                throw new ValidationException("client " + authority + " endpoint " + endpoint + " should be host:port", ex);
+            }
+            ManagedChannelBuilder<?> builder = channelBuilder(authority, endpoint.substring(0, index), port, cfg);
+            if (serviceConfig != null) {
+                builder.defaultServiceConfig(serviceConfig).enableRetry();
+            }
+            for (int i = 0; i < Math.max(1, cfg.getChannels()); i++) {
+                channels.computeIfAbsent(endpoint, k -> new ArrayList<>()).add(builder.build());
+            }
+        }
+        configs.put(authority, cfg);
+        if (cfg.isTypedPacking()) {
+            typed.add(authority);
+        }
+        if (cfg.getCodec() != null && !cfg.getCodec().isEmpty()) {
+            if (Transforms.getPacketTransform(cfg.getCodec()) == null) {
+                throw new ValidationException("client " + authority + " codec " + cfg.getCodec() + " NOT found");
+            }
+            codecs.put(authority, cfg.getCodec());
+        }
+        stubs.put(authority, new Stub<>(authority, new ChannelPool(cfg.getBalancer(), channels),
+                cfg.getDefaultTimeoutMillis() > 0 ? Duration.ofMillis(cfg.getDefaultTimeoutMillis()) : Duration.ofSeconds(cfg.getDefaultTimeout())));
+    }
+
+    private ManagedChannelBuilder<?> channelBuilder(String authority, String host, int port, ClientConfig cfg) {
+        ManagedChannelBuilder<?> builder = ManagedChannelBuilder.forAddress(host.trim(), port);
+        boolean transport = cfg.getTransport() != null && cfg.getTransport() != Transport.DEFAULT;
+        if (transport || cfg.getFlowControlWindow() > 0) {
+            NettyChannelBuilder netty = NettyChannelBuilder.forAddress(host.trim(), port);
+            if (transport) {
+                boolean epoll = EventLoops.isEpoll(cfg.getTransport());
+                netty.channelType(EventLoops.channelType(epoll)).eventLoopGroup(eventLoop(authority, epoll, cfg));
+            }
+            if (cfg.getFlowControlWindow() > 0) {
+                netty.flowControlWindow(cfg.getFlowControlWindow());
+            }
+            builder = netty;
+        }
         if (cfg.getKeepAliveTime() > 0) {
             builder.keepAliveTime(cfg.getKeepAliveTime(), TimeUnit.SECONDS);
             builder.keepAliveWithoutCalls(cfg.isKeepAliveWithoutCalls());
@@ -124,7 +243,27 @@ public class Client {
         if (cfg.getMaxInboundMessageSize() > 512 * 1024) {
             builder.maxInboundMessageSize(cfg.getMaxInboundMessageSize());
         }
-        stubs.put(authority, new Stub<>(authority, builder.build(), Duration.ofSeconds(cfg.getDefaultTimeout())));
+        builder.compressorRegistry(Compression.compressors()).decompressorRegistry(Compression.decompressors()).
+                intercept(Compression.CLIENT);
+        return builder;
+    }
+
+    /**
+     * @param authority authority
+     * @return the in-flight calls of each channel of the authority, in the order of endpoints, empty if NOT setup
+     */
+    public int[] inFlight(String authority) {
+        return Optional.ofNullable(stubs.get(authority)).map(Stub::getChannel).
+                map(channel -> ((ChannelPool) channel).inFlight()).orElse(new int[0]);
+    }
+
+    /**
+     * @param authority authority
+     * @return the latency EWMA(nanos) of each channel's endpoint, in the order of endpoints, empty if NOT setup
+     */
+    public double[] latency(String authority) {
+        return Optional.ofNullable(stubs.get(authority)).map(Stub::getChannel).
+                map(channel -> ((ChannelPool) channel).latency()).orElse(new double[0]);
     }
 
     public <T> T autowired(String authority, Class<T> type) {
@@ -150,39 +289,169 @@ public class Client {
             }
             return null;
         }
-        if (!types.contains(type)) {
-            List<MethodDescriptor> descriptors = Arrays.stream(type.getMethods()).
-                    map(method -> new MethodDescriptor(type, method)).collect(Collectors.toList());
-            MethodDescriptor.validateProtocol(type, descriptors);
-            descriptors.forEach(desc -> methods.put(new MethodKey(type, desc.getMethod()), desc));
-            types.add(type);
+        List<Interceptor> chain = interceptors != null ? Collections.unmodifiableList(new ArrayList<>(interceptors)) : Collections.emptyList();
+        Map<Method, Invoker> invokers = new HashMap<>();
+        for (MethodDescriptor descriptor : protocols(type)) {
+            Stub<?,?,?> template = new Stub<>(prototype, descriptor, codecs.get(authority), typed.contains(authority));
+            Compression compression = compression(authority, descriptor);
+            if (compression != null) {
+                template.setCompression(compression.getEncoding());
+                template.setOption(Compression.KEY, compression);
+            }
+            invokers.put(descriptor.getMethod(), new Invoker(descriptor, template, chain,
+                    cache(authority, descriptor), flights(authority, descriptor), batcher(authority, descriptor, prototype),
+                    hedger(authority, descriptor), circuit(authority, descriptor)));
+        }
+        Object bean = generated ? ProtocolProxy.newInstance(type, invokers::get) : null;
+        if (bean != null) {
+            return (T) bean;
         }
-        Object bean = creator.newProxyInstance(type, (proxy, method, args) -> {
-            if (method.getDeclaringClass().equals(Object.class)) {
+        bean = creator.newProxyInstance(type, (proxy, method, args) -> {
+            Invoker invoker = invokers.get(method);
+            if (invoker == null) {
                 try {
                     return method.invoke(proxy, args);
                 } catch (Exception ex) {
                     return null;
                 }
             }
-            return walkThrough(prototype, methods.get(new MethodKey(type, method)), proxy, args, Optional.ofNullable(interceptors).orElseGet(ArrayList::new));
+            return invoker.call(proxy, args);
         });
         return (T) bean;
     }
 
-    @SuppressWarnings("unchecked")
-    private Object walkThrough(Stub<?,?,?> prototype, MethodDescriptor descriptor, Object proxy,
-                               Object[] args, List<Interceptor> interceptors) throws Exception{
-        Stub<?,?,?> stub = new Stub<>(prototype, descriptor);
+    private ResponseCache cache(String authority, MethodDescriptor descriptor) {
+        ClientCache config = descriptor.getMethod().getAnnotation(ClientCache.class);
+        if (config == null) {
+            return null;
+        }
+        if (descriptor.getMethodType() != MethodType.UNARY || descriptor.isFuture()) {
+            throw new ValidationException(descriptor.getMethod() + " @ClientCache only for UNARY method NOT return future");
+        }
+        return caches.computeIfAbsent(authority + descriptor.getSign(), key -> new ResponseCache(descriptor, config));
+    }
+
+    private Flights flights(String authority, MethodDescriptor descriptor) {
+        if (descriptor.getMethod().isAnnotationPresent(SingleFlight.class) &&
+                (descriptor.getMethodType() != MethodType.UNARY || descriptor.isFuture())) {
+            throw new ValidationException(descriptor.getMethod() + " @SingleFlight only for UNARY method NOT return future");
+        }
+        MethodDescriptor unary = descriptor.getMethodType() == MethodType.ASYNCHRONOUS_UNARY ? descriptor.getPeer() : descriptor;
+        if (!unary.getMethod().isAnnotationPresent(SingleFlight.class) || unary.isFuture()) {
+            return null;
+        }
+        return flights.computeIfAbsent(authority + unary.getSign(), key -> new Flights(unary));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Batcher batcher(String authority, MethodDescriptor descriptor, Stub<?,?,?> prototype) {
+        Batch config = descriptor.getMethod().getAnnotation(Batch.class);
+        if (config == null) {
+            return null;
+        }
+        if (descriptor.isV2() || descriptor.getMethodType() != MethodType.UNARY || descriptor.isFuture()) {
+            throw new ValidationException(descriptor.getMethod() + " @Batch only for UNARY method of v1 (NOT @Protocol) interface");
+        }
+        return batchers.computeIfAbsent(authority + descriptor.getSign(),
+                key -> new Batcher(descriptor, new Stub(prototype, descriptor), config));
+    }
+
+    private Hedger hedger(String authority, MethodDescriptor descriptor) {
+        Hedge config = descriptor.getMethod().getAnnotation(Hedge.class);
+        if (config == null) {
+            return null;
+        }
+        if (descriptor.getMethodType() != MethodType.UNARY || descriptor.isFuture() || descriptor.getMethod().isAnnotationPresent(Batch.class)) {
+            throw new ValidationException(descriptor.getMethod() + " @Hedge only for UNARY method NOT return future, NOT @Batch");
+        }
+        return hedgers.computeIfAbsent(authority + descriptor.getSign(), key -> new Hedger(descriptor, config));
+    }
+
+    private Circuit circuit(String authority, MethodDescriptor descriptor) {
+        CircuitBreaker config = descriptor.getMethod().getAnnotation(CircuitBreaker.class);
+        boolean blocking = descriptor.getMethodType() == MethodType.UNARY || descriptor.getMethodType() == MethodType.BLOCKING_SERVER_STREAMING;
+        if (config != null && !blocking) {
+            throw new ValidationException(descriptor.getMethod() + " @CircuitBreaker only for UNARY / BLOCKING_SERVER_STREAMING method");
+        }
+        config = Optional.ofNullable(config).orElseGet(() -> descriptor.getType().getAnnotation(CircuitBreaker.class));
+        if (config == null || !blocking) {
+            return null;
+        }
+        CircuitBreaker breaker = config;
+        String name = authority + "/" + descriptor.getType().getName() + "/" + descriptor.getMethod().getName();
+        return circuits.computeIfAbsent(authority + descriptor.getSign(), key -> new Circuit(name, breaker));
+    }
+
+    private Compression compression(String authority, MethodDescriptor descriptor) {
+        ClientConfig cfg = configs.get(authority);
+        String name = authority + "/" + descriptor.getType().getName() + "/" + descriptor.getMethod().getName();
+        Compression compression = Compression.of(name, descriptor, cfg != null ? cfg.getCompression() : null,
+                cfg != null ? cfg.getCompressionMinSize() : 0);
+        if (compression == null) {
+            return null;
+        }
+        return compressions.computeIfAbsent(authority + descriptor.getSign(), key -> compression);
+    }
+
+    /**
+     * the requests' compression ratio / time, for tuning the min size
+     * @return name (authority/protocol/method) to its compression
+     */
+    public Map<String, Compression> getCompressions() {
+        return compressions.values().stream().collect(Collectors.toMap(Compression::getName, c -> c, (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * the circuit breakers' state / failure rate / slow call rate, for metrics
+     * @return name (authority/protocol/method) to its circuit breaker
+     */
+    public Map<String, Circuit> getCircuits() {
+        return circuits.values().stream().collect(Collectors.toMap(Circuit::getName, c -> c, (a, b) -> a, TreeMap::new));
+    }
+
+    private static void record(Circuit circuit, Circuit.State admitted, long start, Packet<?> packet) {
+        if (packet.isException()) {
+            circuit.record(admitted, System.nanoTime() - start, circuit.isFailure((Throwable) packet.getPayload()));
+        } else if (packet.getPayload() instanceof CompletableFuture) {
+            ((CompletableFuture<?>) packet.getPayload()).whenComplete((value, ex) ->
+                    circuit.record(admitted, System.nanoTime() - start, ex != null && circuit.isFailure(ex)));
+        } else {
+            circuit.record(admitted, System.nanoTime() - start, false);
+        }
+    }
+
+    /**
+     * the response cache of the "@ClientCache" method
+     * @param authority authority
+     * @param method the protocol method
+     * @return the cache, null if NOT autowired or NOT "@ClientCache" method
+     */
+    public ResponseCache getCache(String authority, Method method) {
+        return protocols.values().stream().flatMap(List::stream).
+                filter(descriptor -> descriptor.getMethod().equals(method)).findAny().
+                map(descriptor -> caches.get(authority + descriptor.getSign())).orElse(null);
+    }
+
+    private List<MethodDescriptor> protocols(Class<?> type) {
+        return protocols.computeIfAbsent(type, this::descriptors);
+    }
+
+    private List<MethodDescriptor> descriptors(Class<?> type) {
+        List<MethodDescriptor> descriptors = Arrays.stream(type.getMethods()).
+                map(method -> new MethodDescriptor(type, method)).collect(Collectors.toList());
+        MethodDescriptor.validateProtocol(type, descriptors);
+        return descriptors;
+    }
+
+    private Object walkThrough(Invoker invoker, Object proxy, Object[] args) throws Exception{
+        MethodDescriptor descriptor = invoker.descriptor;
+        Stub<?,?,?> stub = new Stub<>(invoker.template);
         Context context =new Context(descriptor, args, proxy, stub);
-        Packet<?> packet = Utils.before(context, interceptors);
+        Packet<?> packet = Utils.before(context, invoker.interceptors);
         if (!packet.isException()){
-            try {
-                packet = descriptor.isV2() ? v2StubCall(context, stub) : v1StubCall(context, (Stub<?,Packet<?>,Packet<?>>)stub);
-            }catch (Exception ex0){
-                packet = Packet.throwable(ex0);
-            }
-            Utils.after(context, interceptors, packet);
+            packet = invoker.flights != null ? invoker.flights.call(context, stub, () -> stubCall(invoker, context, stub)) :
+                    stubCall(invoker, context, stub);
+            Utils.after(context, invoker.interceptors, packet);
         }
         if (packet.isException()){
             throw (Exception)packet.getPayload();
@@ -190,14 +459,50 @@ public class Client {
         return packet.getPayload();
     }
 
+    /**
+     * the RPC of the call, after the interceptors' before
+     */
+    @SuppressWarnings("unchecked")
+    private Packet<?> stubCall(Invoker invoker, Context context, Stub<?,?,?> stub) {
+        MethodDescriptor descriptor = invoker.descriptor;
+        Circuit.State admitted = invoker.circuit != null ? invoker.circuit.acquire() : null;
+        long start = System.nanoTime();
+        Packet<?> packet;
+        try {
+            if (invoker.circuit != null && admitted == null) {
+                packet = Packet.throwable(Status.UNAVAILABLE.withDescription("circuit " + invoker.circuit.getName() + " is open").asRuntimeException());
+            } else if (invoker.batcher != null) {
+                packet = Packet.ok(invoker.batcher.call(stub, context.arguments()));
+            } else if (invoker.hedger != null) {
+                packet = invoker.hedger.call(context, (Stub<?,Object,Object>) stub);
+            } else if (descriptor.isReactive()) {
+                packet = Packet.ok(Reactive.call(context, (Stub<?,Object,Object>) stub));
+            } else {
+                packet = descriptor.isV2() ? v2StubCall(context, stub) : v1StubCall(context, (Stub<?,Packet<?>,Packet<?>>)stub);
+            }
+        }catch (Exception ex0){
+            packet = Packet.throwable(ex0);
+        }
+        if (admitted != null) {
+            record(invoker.circuit, admitted, start, packet);
+        }
+        return packet;
+    }
+
     @SuppressWarnings("unchecked")
     private <ReqT, RespT> Packet<?> v2StubCall(Context context, Stub<?, ReqT, RespT> stub) {
         MethodDescriptor descriptor = context.getMethodDescriptor();
 //        stub.attach(HeaderMetadata.ROOT, descriptor.getSign());
-        Object[] args = context.getArguments();
+        Object[] args = context.arguments();
         switch (descriptor.getMethodType()) {
             case UNARY: {
                 stub.attachDefaultDeadline();
+                if (descriptor.isFuture()) {
+                    CompletableFuture<Object> future = new CompletableFuture<>();
+                    AtomicReference<Object> value = new AtomicReference<>();
+                    stub.asyncUnary((ReqT) args[0], new MessageObserver<>(value::set, future::completeExceptionally, () -> future.complete(value.get())));
+                    return Packet.ok(future);
+                }
                 return Packet.ok(stub.blockingUnary((ReqT) args[0]));
             }
             case ASYNCHRONOUS_UNARY: {
@@ -238,26 +543,34 @@ public class Client {
     }
 
     private Packet<?> v1StubCall(Context context, Stub<?,Packet<?>,Packet<?>> stub) {
-        Transform<Packet<?>, InternalProto.Packet> transform= Transforms.getOrIdentityTransform(Packet.class);
         MethodDescriptor descriptor = context.getMethodDescriptor();
+        Transform<Packet<?>, InternalProto.Packet> transform= stub.requestTransform();
+        Object[] arguments = context.arguments();
         switch (descriptor.getMethodType()) {
             case UNARY: {
                 stub.attach(HeaderMetadata.ROOT, descriptor.getSign());
                 stub.attachDefaultDeadline();
-                return stub.blockingUnary(Packet.boxing(context.getArguments()));
+                if (descriptor.isFuture()) {
+                    CompletableFuture<Object> future = new CompletableFuture<>();
+                    AtomicReference<Object> value = new AtomicReference<>();
+                    stub.asyncUnary(Packet.boxing(arguments), new MessageObserver<>(packet -> value.set(packet.getPayload()),
+                            future::completeExceptionally, () -> future.complete(value.get())));
+                    return Packet.ok(future);
+                }
+                return stub.blockingUnary(Packet.boxing(arguments));
             }
             case ASYNCHRONOUS_UNARY: {
                 MethodDescriptor peer = descriptor.getPeer();
                 stub.attach(HeaderMetadata.ROOT, peer.getSign());
-                Object[] args = Arrays.copyOf(context.getArguments(), peer.getMethod().getParameterCount()); //-1
-                MessageStream<?> respStream = descriptor.getStream(context.getArguments());
+                Object[] args = Arrays.copyOf(arguments, peer.getMethod().getParameterCount()); //-1
+                MessageStream<?> respStream = descriptor.getStream(arguments);
                 stub.attachDeadline(respStream.timeout());
                 stub.asyncUnary(Packet.boxing(args), respStream.toPacketStreamObserver());
                 return new Packet<>();
             }
             case BLOCKING_SERVER_STREAMING: {
                 MethodDescriptor peer = descriptor.getPeer();
-                Object[] args = Arrays.copyOf(context.getArguments(), peer.getMethod().getParameterCount()); //+1
+                Object[] args = Arrays.copyOf(arguments, peer.getMethod().getParameterCount()); //+1
                 stub.attach(HeaderMetadata.ROOT, peer.getSign());
                 stub.attachDefaultDeadline();
                 List<Object> list = new ArrayList<>();
@@ -266,15 +579,15 @@ public class Client {
             }
             case SERVER_STREAMING: {
                 stub.attach(HeaderMetadata.ROOT, descriptor.getSign());
-                MessageStream<?> respStream = descriptor.getStream(context.getArguments());
+                MessageStream<?> respStream = descriptor.getStream(arguments);
                 stub.attachDeadline(respStream.timeout());
-                stub.asyncServerStreaming(Packet.boxing(context.getArguments()), respStream.toPacketStreamObserver());
+                stub.asyncServerStreaming(Packet.boxing(arguments), respStream.toPacketStreamObserver());
                 return new Packet<>();
             }
             case CLIENT_STREAMING: {
                 stub.attach(HeaderMetadata.ROOT, descriptor.getSign());
-                MessageStream<?> respStream = descriptor.getStream(context.getArguments());
-                stub.attach(HeaderMetadata.BINARY_ROOT, transform.build(Packet.boxing(context.getArguments())).getData().toByteArray());
+                MessageStream<?> respStream = descriptor.getStream(arguments);
+                stub.attach(HeaderMetadata.BINARY_ROOT, transform.build(Packet.boxing(arguments)).getData().toByteArray());
                 stub.attachDeadline(respStream.timeout());
                 StreamObserver<Packet<?>> reqObserver = stub.asyncClientStreaming(respStream.toPacketStreamObserver());
                 MessageStream<?> reqStream = new MessageStream<>(new MessageObserver<>(reqObserver)).link(respStream);
@@ -282,8 +595,8 @@ public class Client {
             }
             case BIDI_STREAMING: {
                 stub.attach(HeaderMetadata.ROOT, descriptor.getSign());
-                MessageStream<?> respStream = descriptor.getStream(context.getArguments());
-                stub.attach(HeaderMetadata.BINARY_ROOT, transform.build(Packet.boxing(context.getArguments())).getData().toByteArray());
+                MessageStream<?> respStream = descriptor.getStream(arguments);
+                stub.attach(HeaderMetadata.BINARY_ROOT, transform.build(Packet.boxing(arguments)).getData().toByteArray());
                 stub.attachDeadline(respStream.timeout());
                 StreamObserver<Packet<?>> reqObserver = stub.asyncBidiStreaming(respStream.toPacketStreamObserver());
                 MessageStream<?> reqStream = new MessageStream<>(new MessageObserver<>(reqObserver)).link(respStream);
@@ -294,10 +607,46 @@ public class Client {
         }
     }
 
+    /**
+     * the event loop of the client's channels, the shared one (by all the clients of the same transport) or its own
+     */
+    private EventLoopGroup eventLoop(String authority, boolean epoll, ClientConfig cfg) {
+        if (cfg.isShareEventLoop()) {
+            return sharedEventLoops.computeIfAbsent(epoll, k -> {
+                EventLoopGroup group = EventLoops.group(epoll, cfg.getEventLoopThreads(), "jackstaff-client");
+                eventLoops.add(group);
+                return group;
+            });
+        }
+        EventLoopGroup group = EventLoops.group(epoll, cfg.getEventLoopThreads(), "jackstaff-client-" + authority);
+        eventLoops.add(group);
+        return group;
+    }
+
+    /**
+     * shut the channels down, their in-flight calls still complete,
+     * the event loops are shut down (on a daemon thread) after the channels are terminated
+     */
     public void shutdown(){
-        stubs.values().parallelStream().map(Stub::getChannel).
-                filter(c->!c.isShutdown()).filter(c->!c.isTerminated()).
-                forEach(ManagedChannel::shutdown);
+        List<ManagedChannel> channels = stubs.values().stream().map(Stub::getChannel).distinct().
+                filter(c->!c.isTerminated()).collect(Collectors.toList());
+        channels.stream().filter(c->!c.isShutdown()).forEach(ManagedChannel::shutdown);
+        if (eventLoops.isEmpty()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                for (ManagedChannel channel : channels) {
+                    while (!channel.awaitTermination(1, TimeUnit.MINUTES)) {
+                        //still has in-flight calls
+                    }
+                }
+            } catch (InterruptedException ignore) {
+            }
+            eventLoops.forEach(EventLoopGroup::shutdownGracefully);
+        }, "jackstaff-client-shutdown");
+        thread.setDaemon(true);
+        thread.start();
     }
 
 }
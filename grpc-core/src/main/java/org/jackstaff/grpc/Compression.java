@@ -0,0 +1,299 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.*;
+import org.jackstaff.grpc.annotation.Compress;
+import org.jackstaff.grpc.exception.ValidationException;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * the message compression of one method, per authority at client side (requests), per method at server side (responses),
+ * the messages smaller than min size are sent raw. it's the metrics of compress ratio and time for tuning the min size.
+ * @author reco@jackstaff.org
+ * @see Compress
+ */
+public final class Compression {
+
+    static final String IDENTITY = "identity";
+    static final CallOptions.Key<Compression> KEY = CallOptions.Key.create("jackstaff-compression");
+
+    private static final ThreadLocal<Compression> CURRENT = new ThreadLocal<>();
+    private static final CompressorRegistry COMPRESSORS = CompressorRegistry.newEmptyInstance();
+    private static volatile DecompressorRegistry decompressors = DecompressorRegistry.getDefaultInstance();
+
+    static {
+        COMPRESSORS.register(Codec.Identity.NONE);
+        COMPRESSORS.register(new Metered(new Codec.Gzip()));
+    }
+
+    /**
+     * the client side interceptor, compress the requests of the calls with the Compression option
+     */
+    static final ClientInterceptor CLIENT = new ClientInterceptor() {
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(io.grpc.MethodDescriptor<ReqT, RespT> method,
+                                                                   CallOptions options, Channel next) {
+            Compression compression = options.getOption(KEY);
+            ClientCall<ReqT, RespT> call = next.newCall(method, options);
+            if (compression == null) {
+                return call;
+            }
+            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+                @Override
+                public void sendMessage(ReqT message) {
+                    compression.send(message, this::setMessageCompression, super::sendMessage);
+                }
+            };
+        }
+    };
+
+    /**
+     * the compressor of the encoding, measure the compress time and compressed size of the current Compression
+     */
+    private static final class Metered implements Compressor {
+
+        private final Compressor codec;
+
+        Metered(Compressor codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public String getMessageEncoding() {
+            return codec.getMessageEncoding();
+        }
+
+        @Override
+        public OutputStream compress(OutputStream os) throws IOException {
+            Compression compression = CURRENT.get();
+            return compression != null ? compression.meter(codec, os) : codec.compress(os);
+        }
+
+    }
+
+    private final String name;
+    private final String encoding;
+    private final int minSize;
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    Compression(String name, String encoding, int minSize) {
+        this.name = name;
+        this.encoding = encoding;
+        this.minSize = minSize;
+    }
+
+    /**
+     * register a compression codec (faster than gzip), before Client setup / Server build, both side should have it
+     * @param codec the codec, it's advertised in the accept encoding
+     */
+    public static synchronized void register(Codec codec) {
+        COMPRESSORS.register(new Metered(codec));
+        decompressors = decompressors.with(codec, true);
+    }
+
+    static CompressorRegistry compressors() {
+        return COMPRESSORS;
+    }
+
+    static DecompressorRegistry decompressors() {
+        return decompressors;
+    }
+
+    /**
+     * @param name the metrics name
+     * @param descriptor the method, its @Compress or its protocol's override the config
+     * @param encoding the config's encoding
+     * @param minSize the config's min size
+     * @return null if NOT compressed
+     */
+    static Compression of(String name, MethodDescriptor descriptor, String encoding, int minSize) {
+        Compress config = Optional.ofNullable(descriptor.getMethod().getAnnotation(Compress.class)).
+                orElseGet(() -> descriptor.getType().getAnnotation(Compress.class));
+        if (config != null) {
+            encoding = config.value();
+            minSize = config.minSize();
+        }
+        if (encoding == null || encoding.isEmpty() || IDENTITY.equals(encoding)) {
+            return null;
+        }
+        if (COMPRESSORS.lookupCompressor(encoding) == null) {
+            throw new ValidationException(name + " compression " + encoding + " NOT found");
+        }
+        return new Compression(name, encoding, Math.max(0, minSize));
+    }
+
+    /**
+     * the server side call, compress its responses if the client accept the encoding
+     */
+    <ReqT, RespT> ServerCall<ReqT, RespT> compress(ServerCall<ReqT, RespT> call) {
+        return new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void sendHeaders(Metadata headers) {
+                setCompression(encoding);
+                super.sendHeaders(headers);
+            }
+
+            @Override
+            public void sendMessage(RespT message) {
+                send(message, this::setMessageCompression, super::sendMessage);
+            }
+        };
+    }
+
+    /**
+     * the message smaller than min size is sent raw, the size of a protobuf message is known (cached) before it's sent
+     */
+    private <T> void send(T message, Consumer<Boolean> messageCompression, Consumer<T> sender) {
+        messages.increment();
+        boolean compress = !(message instanceof MessageLite) || ((MessageLite) message).getSerializedSize() >= minSize;
+        messageCompression.accept(compress);
+        if (!compress) {
+            sender.accept(message);
+            return;
+        }
+        CURRENT.set(this);
+        try {
+            sender.accept(message);
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    private OutputStream meter(Compressor codec, OutputStream os) throws IOException {
+        compressed.increment();
+        long[] wire = new long[1];
+        OutputStream counting = new FilterOutputStream(os) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                wire[0] += len;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                wire[0]++;
+            }
+        };
+        long start = System.nanoTime();
+        OutputStream compressing = codec.compress(counting);
+        nanos.add(System.nanoTime() - start);
+        return new FilterOutputStream(compressing) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime();
+                out.write(b, off, len);
+                nanos.add(System.nanoTime() - start);
+                uncompressedBytes.add(len);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                long start = System.nanoTime();
+                out.write(b);
+                nanos.add(System.nanoTime() - start);
+                uncompressedBytes.increment();
+            }
+
+            @Override
+            public void close() throws IOException {
+                long start = System.nanoTime();
+                try {
+                    out.close();
+                } finally {
+                    nanos.add(System.nanoTime() - start);
+                    compressedBytes.add(wire[0]);
+                }
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @return the sent messages
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * @return the compressed messages, the others are smaller than min size (or the peer NOT accept the encoding)
+     */
+    public long getCompressed() {
+        return compressed.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * @return compressed bytes / uncompressed bytes of the compressed messages, 1 if none
+     */
+    public double getRatio() {
+        long uncompressed = uncompressedBytes.sum();
+        return uncompressed > 0 ? (double) compressedBytes.sum() / uncompressed : 1;
+    }
+
+    /**
+     * @return the total time of compressing
+     */
+    public Duration getCompressTime() {
+        return Duration.ofNanos(nanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "Compression{" +
+                "name='" + name + '\'' +
+                ", encoding=" + encoding +
+                ", minSize=" + minSize +
+                ", compressed=" + getCompressed() + "/" + getMessages() +
+                ", ratio=" + String.format("%.3f", getRatio()) +
+                ", compressTime=" + getCompressTime().toMillis() + "ms" +
+                '}';
+    }
+
+}
@@ -21,6 +21,7 @@ import org.jackstaff.grpc.internal.Stub;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,17 +33,18 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public final class Context {
 
+    private static final Object[] EMPTY = new Object[0];
+
     private final Object[] arguments;
     private final Object target;
-    private final Map<Object, Object> attributes;
+    private volatile Map<Object, Object> attributes;
     private final MethodDescriptor methodDescriptor;
     private final Stub<?,?,?> stub;
     private final io.grpc.Context context;
 
     private Context(MethodDescriptor methodDescriptor, Object[] arguments, Object target, io.grpc.Context context, Stub<?,?,?> stub){
-        this.attributes = new ConcurrentHashMap<>();
         this.methodDescriptor = methodDescriptor;
-        this.arguments = Optional.ofNullable(arguments).orElse(new Object[0]);
+        this.arguments = arguments != null ? arguments : EMPTY;
         this.target = target;
         this.stub = stub;
         this.context = context;
@@ -101,7 +103,8 @@ public final class Context {
      */
     @SuppressWarnings("unchecked")
     public <T> T getAttribute(Object key) {
-        return (T) attributes.get(key);
+        Map<Object, Object> attributes = this.attributes;
+        return attributes != null ? (T) attributes.get(key) : null;
     }
 
     /**
@@ -113,6 +116,14 @@ public final class Context {
      * @param value value
      */
     public void setAttribute(Object key, Object value) {
+        Map<Object, Object> attributes = this.attributes;
+        if (attributes == null) {
+            synchronized (this) {
+                if ((attributes = this.attributes) == null) {
+                    attributes = this.attributes = new ConcurrentHashMap<>();
+                }
+            }
+        }
         attributes.put(key, value);
     }
 
@@ -138,6 +149,21 @@ public final class Context {
         }
     }
 
+    /**
+     * set the deadline of this call, override the method's @Timeout and the client config's default timeout
+     * only valid in client side, before the call (Interceptor.before)
+     * @param timeout timeout
+     */
+    public void setTimeout(Duration timeout) {
+        if (stub !=null){
+            stub.setTimeout(timeout);
+        }
+    }
+
+    Object[] arguments() {
+        return arguments;
+    }
+
     MethodDescriptor getMethodDescriptor() {
         return methodDescriptor;
     }
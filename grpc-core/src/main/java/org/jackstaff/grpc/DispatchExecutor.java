@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc;
+
+import org.jackstaff.grpc.configuration.Dispatcher;
+import org.jackstaff.grpc.exception.ValidationException;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the server side executor of one Dispatcher, with the queue depth / active gauges for sizing the pool
+ * @author reco@jackstaff.org
+ * @see Dispatcher
+ */
+public final class DispatchExecutor implements Executor {
+
+    private final String name;
+    private final Dispatcher dispatcher;
+    private final Executor executor;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    DispatchExecutor(String name, Dispatcher dispatcher, int threads) {
+        this.name = name;
+        this.dispatcher = dispatcher;
+        this.executor = create(name, dispatcher, threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    private static Executor create(String name, Dispatcher dispatcher, int threads) {
+        switch (dispatcher) {
+            case DIRECT:
+                return Runnable::run;
+            case FIXED:
+                return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory(name));
+            case FORK_JOIN:
+                return new ForkJoinPool(threads, pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("jackstaff-" + name + "-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, true);
+            case VIRTUAL:
+                try {
+                    return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException ex) {
+                    throw new ValidationException("virtual thread NOT supported in java " + System.getProperty("java.version"), ex);
+                }
+            case DEFAULT:
+            default:
+                return Executors.newCachedThreadPool(factory(name));
+        }
+    }
+
+    private static ThreadFactory factory(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "jackstaff-" + name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException ex) {
+            queued.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return the executor runs the tasks one by one in submit order, on this executor, like a gRPC call's callbacks
+     */
+    Executor serial() {
+        return new SerialExecutor(this);
+    }
+
+    void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @return the tasks submitted but NOT started yet
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return the tasks running now, it's the busy threads (the virtual ones for VIRTUAL)
+     */
+    public int getActiveThreads() {
+        return active.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchExecutor{" +
+                "name='" + name + '\'' +
+                ", dispatcher=" + dispatcher +
+                ", queueDepth=" + queued.get() +
+                ", activeThreads=" + active.get() +
+                '}';
+    }
+
+    private static final class SerialExecutor implements Executor, Runnable {
+
+        private final Executor executor;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (running.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException ex) {
+                    running.set(false);
+                    throw ex;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            } finally {
+                running.set(false);
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Deadline;
+import org.jackstaff.grpc.annotation.SingleFlight;
+import org.jackstaff.grpc.internal.Stub;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * the in-flight calls of one UNARY method, keyed by the encoded request (after the interceptors' before)
+ * @author reco@jackstaff.org
+ * @see SingleFlight
+ */
+final class Flights {
+
+    private static final class Timer {
+
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jackstaff-single-flight");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    }
+
+    private final MethodDescriptor descriptor;
+    private final Map<ByteString, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    Flights(MethodDescriptor descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * the call after the interceptors' before, the first caller runs the RPC, the flight keeps its encoded result,
+     * every other caller get its own decoded copy. the ASYNCHRONOUS_UNARY call (args end with the Consumer) join
+     * the same flights, the first caller's response stream is replaced by one completes the flight.
+     * the waits end by the call's deadline, resolved as the RPC's
+     * @param context the call
+     * @param stub the call's stub
+     * @param invocation the RPC
+     * @return the result packet of the call
+     */
+    Packet<?> call(Context context, Stub<?, ?, ?> stub, Supplier<Packet<?>> invocation) {
+        Object[] args = context.arguments();
+        if (context.getMethodDescriptor().getMethodType() == MethodType.ASYNCHRONOUS_UNARY) {
+            return callAsync(context, stub, invocation);
+        }
+        ByteString key = descriptor.requestKey(args);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> shared = flights.putIfAbsent(key, flight);
+        if (shared != null) {
+            return await(shared, stub.deadline(null));
+        }
+        try {
+            Packet<?> packet = invocation.get();
+            if (packet.isException()) {
+                flight.completeExceptionally((Throwable) packet.getPayload());
+            } else {
+                flight.complete(encode(packet.getPayload()));
+            }
+            return packet;
+        } catch (RuntimeException ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Packet<?> callAsync(Context context, Stub<?, ?, ?> stub, Supplier<Packet<?>> invocation) {
+        Object[] args = context.arguments();
+        ByteString key = descriptor.requestKey(Arrays.copyOf(args, args.length - 1));
+        MessageStream<Object> stream = (MessageStream<Object>) context.getMethodDescriptor().getStream(args);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> shared = flights.putIfAbsent(key, flight);
+        if (shared != null) {
+            join(shared, stream, stub.deadline(stream.timeout()));
+            return new Packet<>();
+        }
+        flight.whenComplete((result, ex) -> flights.remove(key, flight));
+        context.setStream(new MessageStream<>((MessageStatus<Object> status) -> {
+            if (status.isMessage()) {
+                flight.complete(encode(status.getMessage()));
+            } else if (status.isOk()) {
+                flight.complete(null);
+            } else {
+                flight.completeExceptionally(status.getCause() != null ? status.getCause() : status.asRuntimeException());
+            }
+        }, stream.timeout()));
+        Packet<?> packet;
+        try {
+            packet = invocation.get();
+        } catch (RuntimeException ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            context.setStream(stream);
+        }
+        if (packet.isException()) {
+            flight.completeExceptionally((Throwable) packet.getPayload());
+            return packet;
+        }
+        join(flight, stream, null);
+        return packet;
+    }
+
+    private Object encode(Object result) {
+        return result != null ? descriptor.encodeResponse(result) : null;
+    }
+
+    private Object decode(Object proto) {
+        return proto != null ? descriptor.decodeResponse(proto) : null;
+    }
+
+    private Packet<?> await(CompletableFuture<Object> shared, Deadline deadline) {
+        try {
+            Object proto = deadline != null ? shared.get(deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS) : shared.get();
+            return Packet.ok(decode(proto));
+        } catch (TimeoutException ex) {
+            return Packet.throwable(Status.DEADLINE_EXCEEDED.withDescription("single flight wait timeout").asRuntimeException());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            return Packet.throwable(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Packet.throwable(Status.CANCELLED.withDescription("single flight wait interrupted").asRuntimeException());
+        }
+    }
+
+    private void join(CompletableFuture<Object> shared, MessageStream<Object> stream, Deadline deadline) {
+        ScheduledFuture<?> timer = deadline != null ? Timer.SCHEDULER.schedule(() ->
+                stream.error(Status.DEADLINE_EXCEEDED.withDescription("single flight wait timeout")),
+                deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS) : null;
+        shared.whenComplete((result, ex) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (stream.isClosed()) {
+                return;
+            }
+            if (ex != null) {
+                stream.error(ex);
+                return;
+            }
+            if (result != null) {
+                stream.accept(decode(result));
+            }
+            stream.done();
+        });
+    }
+
+}
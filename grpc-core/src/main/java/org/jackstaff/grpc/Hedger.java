@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.jackstaff.grpc.annotation.Hedge;
+import org.jackstaff.grpc.exception.ValidationException;
+import org.jackstaff.grpc.internal.ChannelPool;
+import org.jackstaff.grpc.internal.HeaderMetadata;
+import org.jackstaff.grpc.internal.Stub;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * the hedged calls of one UNARY method, the hedge delay is fixed or the percentile of the recent latency,
+ * the hedged calls are throttled to "maxRate" percent of the calls (lock free counters, halved periodically).
+ * an attempt failed by the "codes" waits for the others, any other error completes the call at once.
+ * @author reco@jackstaff.org
+ * @see Hedge
+ */
+final class Hedger {
+
+    private static final class Timer {
+
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jackstaff-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    }
+
+    private static final int SAMPLES = 512;
+    private static final int MIN_SAMPLES = 64;
+    private static final long DECAY_CALLS = 10_000;
+
+    private final MethodDescriptor descriptor;
+    private final long delay;
+    private final double percentile;
+    private final int maxAttempts;
+    private final double maxRate;
+    private final Set<Integer> codes;
+    private final AtomicLongArray latency = new AtomicLongArray(SAMPLES);
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private volatile long threshold;
+
+    Hedger(MethodDescriptor descriptor, Hedge config) {
+        this.descriptor = descriptor;
+        this.delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.delay()));
+        this.percentile = Math.max(1, Math.min(100, config.percentile()));
+        this.maxAttempts = Math.max(1, config.maxAttempts());
+        this.maxRate = Math.max(0, config.maxRate());
+        this.codes = Arrays.stream(config.codes()).boxed().collect(Collectors.toSet());
+        if (codes.contains(Status.Code.OK)) {
+            throw new ValidationException(descriptor.getMethod() + " @Hedge codes can't contain OK");
+        }
+    }
+
+    /**
+     * the UNARY call, the attempts share the call's headers/deadline, and avoid the endpoints already tried
+     * @return the response Packet
+     */
+    Packet<?> call(Context context, Stub<?, Object, Object> stub) throws Exception {
+        Object[] args = context.arguments();
+        boolean v2 = descriptor.isV2();
+        if (!v2) {
+            stub.attach(HeaderMetadata.ROOT, descriptor.getSign());
+        }
+        stub.attachDefaultDeadline();
+        stub.attachOption(ChannelPool.AVOID, ConcurrentHashMap.newKeySet());
+        Object request = v2 ? args[0] : Packet.boxing(args);
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        List<ClientCallStreamObserver<?>> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger outstanding = new AtomicInteger();
+        attempt(stub, request, result, attempts, outstanding);
+        long delay = delay();
+        ScheduledFuture<?>[] timers = new ScheduledFuture<?>[maxAttempts - 1];
+        if (delay > 0) {
+            Runnable hedge = io.grpc.Context.current().wrap(() -> {
+                if (!result.isDone() && acquire()) {
+                    attempt(stub, request, result, attempts, outstanding);
+                }
+            });
+            for (int i = 0; i < timers.length; i++) {
+                timers[i] = Timer.SCHEDULER.schedule(hedge, delay * (i + 1), TimeUnit.NANOSECONDS);
+            }
+        }
+        try {
+            Object value = result.get();
+            return v2 ? Packet.ok(value) : (Packet<?>) value;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        } finally {
+            Arrays.stream(timers).filter(timer -> timer != null).forEach(timer -> timer.cancel(false));
+            attempts.forEach(call -> call.cancel("hedged call completed", null));
+        }
+    }
+
+    /**
+     * an attempt started after the call completed (by a timer racing the cancel of the attempts) is cancelled at once
+     */
+    private void attempt(Stub<?, Object, Object> stub, Object request, CompletableFuture<Object> result,
+                         List<ClientCallStreamObserver<?>> attempts, AtomicInteger outstanding) {
+        long start = System.nanoTime();
+        outstanding.incrementAndGet();
+        AtomicReference<ClientCallStreamObserver<?>> call = new AtomicReference<>();
+        try {
+            stub.asyncUnary(request, new ClientResponseObserver<Object, Object>() {
+
+                private Object value;
+
+                @Override
+                public void beforeStart(ClientCallStreamObserver<Object> requestStream) {
+                    call.set(requestStream);
+                    attempts.add(requestStream);
+                }
+
+                @Override
+                public void onNext(Object value) {
+                    this.value = value;
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    if (outstanding.decrementAndGet() == 0 || !codes.contains(Status.fromThrowable(t).getCode())) {
+                        result.completeExceptionally(t);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    outstanding.decrementAndGet();
+                    if (result.complete(value)) {
+                        observe(System.nanoTime() - start);
+                    }
+                }
+
+            });
+        } catch (RuntimeException ex) {
+            if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(ex);
+            }
+            return;
+        }
+        if (result.isDone() && call.get() != null) {
+            call.get().cancel("hedged call completed", null);
+        }
+    }
+
+    /**
+     * @return the hedge delay(nanos), 0: NOT hedge (no samples of the percentile yet, or maxAttempts 1)
+     */
+    private long delay() {
+        calls.incrementAndGet();
+        if (maxAttempts < 2) {
+            return 0;
+        }
+        return delay > 0 ? delay : threshold;
+    }
+
+    /**
+     * @return true if the hedged call is under "maxRate" percent of the calls
+     */
+    private boolean acquire() {
+        long calls = this.calls.get();
+        if (calls >= DECAY_CALLS) {
+            this.calls.addAndGet(-calls / 2);
+            this.hedges.getAndUpdate(h -> h / 2);
+            calls -= calls / 2;
+        }
+        while (true) {
+            long hedges = this.hedges.get();
+            if ((hedges + 1) * 100 > calls * maxRate) {
+                return false;
+            }
+            if (this.hedges.compareAndSet(hedges, hedges + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void observe(long nanos) {
+        long count = samples.getAndIncrement();
+        latency.set((int) (count % SAMPLES), nanos);
+        if (delay == 0 && count + 1 >= MIN_SAMPLES && (count + 1) % MIN_SAMPLES == 0) {
+            int size = (int) Math.min(count + 1, SAMPLES);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = latency.get(i);
+            }
+            Arrays.sort(sorted);
+            threshold = sorted[Math.min(size - 1, (int) Math.ceil(size * percentile / 100) - 1)];
+        }
+    }
+
+}
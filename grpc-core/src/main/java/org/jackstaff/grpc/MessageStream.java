@@ -16,12 +16,20 @@
 
 package org.jackstaff.grpc;
 
+import io.grpc.stub.CallStreamObserver;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.jackstaff.grpc.configuration.ClientConfig;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -35,14 +43,61 @@ import java.util.function.Consumer;
  */
 public final class MessageStream<T> implements Consumer<T> {
 
+    private static final long POLL = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final class Timer {
+
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jackstaff-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    }
+
+    /**
+     * what accept() does when the other side(gRPC flow control) is NOT ready
+     */
+    public enum Overflow {
+        /**
+         * default, send anyway, the messages are buffered in transport without bound
+         */
+        UNBOUNDED,
+        /**
+         * wait till ready or timeout (RESOURCE_EXHAUSTED), isReady() is polled, so it works in the (serialized) handler
+         * thread, which the onReady callback waits for. do NOT use it on the transport thread (Dispatcher.DIRECT)
+         */
+        BLOCK,
+        /**
+         * buffer in bounded queue (RESOURCE_EXHAUSTED when it's full), drained when ready,
+         * by the next accept(), the onReady callback, or a poll while the handler thread is busy
+         */
+        BUFFER,
+        /**
+         * fail fast with RESOURCE_EXHAUSTED
+         */
+        FAIL
+    }
+
     private final StreamObserver<T> observer;
     private Duration timeout;
 
     private boolean unary;
     private AtomicReference<Status> status = new AtomicReference<>();
 
+    private volatile CallStreamObserver<?> call;
+    private volatile CallStreamObserver<?> requestCall;
+    private volatile MessageStream<?> requests;
+    private volatile Runnable readyHandler;
+    private Overflow overflow = Overflow.UNBOUNDED;
+    private int capacity;
+    private Duration wait = Duration.ZERO;
+    private Queue<T> buffer;
+    private boolean completing;
+    private boolean polling;
+
     /**
-     * deadline not set, it will use client config's default timeout if set
+     * deadline not set, it will use the method's @Timeout or client config's default timeout if set
      * @see ClientConfig#getDefaultTimeout()
      * @param consumer Another style of StreamObserver
      */
@@ -55,7 +110,7 @@ public final class MessageStream<T> implements Consumer<T> {
 
     /**
      * @param consumer Another style of StreamObserver
-     * @param timeout method deadline
+     * @param timeout the call's deadline, override the method's @Timeout and client config's default timeout
      */
     public MessageStream(Consumer<MessageStatus<T>> consumer, Duration timeout) {
         this(consumer);
@@ -64,7 +119,11 @@ public final class MessageStream<T> implements Consumer<T> {
 
     MessageStream(StreamObserver<T> observer){
         this.observer = observer;
-        Original.accept(observer, ServerCallStreamObserver.class, o->o.setOnCancelHandler(this::cancelHandler));
+        Original.accept(observer, ServerCallStreamObserver.class, o->{
+            o.setOnCancelHandler(this::cancelHandler);
+            o.setOnReadyHandler(this::ready);
+            this.call = o;
+        });
     }
 
     static <T> MessageStream<T> build(Consumer<T> consumer) {
@@ -86,11 +145,90 @@ public final class MessageStream<T> implements Consumer<T> {
         if (!isClosed()){
             this.status.set(Status.CANCELLED);
         }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void ready() {
+        synchronized (this) {
+            drain();
+            notifyAll();
+        }
+        Optional.ofNullable(readyHandler).ifPresent(Runnable::run);
+    }
+
+    private void drain() {
+        if (buffer == null) {
+            return;
+        }
+        while (!buffer.isEmpty() && isReady()) {
+            observer.onNext(buffer.poll());
+        }
+        if (completing && buffer.isEmpty()) {
+            completing = false;
+            observer.onCompleted();
+        }
+        if (!buffer.isEmpty() && !polling && !isClosedByError()) {
+            polling = true;
+            Timer.SCHEDULER.schedule(this::poll, POLL, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * the onReady callback is delivered on the call's serialized executor, it waits for a busy handler,
+     * so the buffer is also drained by polling isReady()
+     */
+    private synchronized void poll() {
+        polling = false;
+        try {
+            drain();
+        } catch (RuntimeException ex) {
+            buffer.clear();
+        }
+    }
+
+    private boolean isClosedByError() {
+        Status status = this.status.get();
+        return status != null && !status.isOk();
+    }
+
+    /**
+     * @return true if the other side can receive more messages now (gRPC flow control),
+     * always true when it's NOT a flow controlled (outbound) stream
+     */
+    public boolean isReady() {
+        CallStreamObserver<?> call = this.call;
+        return call == null || call.isReady();
+    }
+
+    /**
+     * @param handler called when the stream turns ready (in gRPC callback thread), after the buffered messages are sent
+     * @return this
+     */
+    public MessageStream<T> onReady(Runnable handler) {
+        this.readyHandler = handler;
+        return this;
+    }
+
+    /**
+     * @param overflow what accept() does when NOT ready
+     * @param capacity the buffer capacity of Overflow.BUFFER
+     * @param wait the max wait of Overflow.BLOCK
+     * @return this
+     */
+    public synchronized MessageStream<T> overflow(Overflow overflow, int capacity, Duration wait) {
+        this.overflow = Optional.ofNullable(overflow).orElse(Overflow.UNBOUNDED);
+        this.capacity = Math.max(1, capacity);
+        this.wait = Optional.ofNullable(wait).orElse(Duration.ZERO);
+        this.buffer = this.overflow == Overflow.BUFFER ? new ArrayDeque<>() : null;
+        return this;
     }
 
     /**
      * send the message to another side
      * @see StreamObserver#onNext
+     * @see Overflow
      * @param message payload
      */
     @Override
@@ -98,19 +236,66 @@ public final class MessageStream<T> implements Consumer<T> {
         if (isClosed()){
             throw Status.UNAVAILABLE.withDescription("status error: message stream closed").asRuntimeException();
         }
-        observer.onNext(message);
+        switch (overflow) {
+            case FAIL:
+                if (!isReady()) {
+                    throw Status.RESOURCE_EXHAUSTED.withDescription("message stream NOT ready").asRuntimeException();
+                }
+                observer.onNext(message);
+                break;
+            case BLOCK:
+                awaitReady();
+                observer.onNext(message);
+                break;
+            case BUFFER:
+                synchronized (this) {
+                    if (buffer.size() >= capacity) {
+                        throw Status.RESOURCE_EXHAUSTED.withDescription("message stream buffer full").asRuntimeException();
+                    }
+                    buffer.offer(message);
+                    drain();
+                }
+                break;
+            default:
+                observer.onNext(message);
+        }
         if (unary){
             done();
         }
     }
 
+    private synchronized void awaitReady() {
+        long deadline = System.nanoTime() + wait.toNanos();
+        while (!isReady()) {
+            if (isClosed()) {
+                throw Status.UNAVAILABLE.withDescription("status error: message stream closed").asRuntimeException();
+            }
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0) {
+                throw Status.RESOURCE_EXHAUSTED.withDescription("message stream NOT ready in " + wait).asRuntimeException();
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, Math.min(nanos, POLL));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw Status.CANCELLED.withCause(ex).asRuntimeException();
+            }
+        }
+    }
+
     /**
      * @see StreamObserver#onCompleted()
-     * close/complete the stream if it is not closed.
+     * close/complete the stream if it is not closed, after the buffered messages are sent.
      */
     public void done(){
         if (!isClosed()){
             status.set(Status.OK);
+            synchronized (this) {
+                if (buffer != null && !buffer.isEmpty()) {
+                    completing = true;
+                    return;
+                }
+            }
             observer.onCompleted();
         }
     }
@@ -161,18 +346,46 @@ public final class MessageStream<T> implements Consumer<T> {
         return this;
     }
 
+    /**
+     * link the request stream to the response stream, share the status, and the client call's flow control
+     */
     MessageStream<T> link(MessageStream<?> another) {
         this.status = another.status;
+        if (another.requestCall != null) {
+            this.call = another.requestCall;
+            another.requests = this;
+        }
         return this;
     }
 
+    private void requestReady() {
+        Optional.ofNullable(requests).ifPresent(MessageStream::ready);
+    }
+
     StreamObserver<T> toStreamObserver(){
-        return new MessageObserver<>(this, this::error, this::done);
+        return new FlowObserver<>(this, this::error, this::done);
     }
 
     @SuppressWarnings("unchecked")
     StreamObserver<Packet<?>> toPacketStreamObserver(){
-        return new MessageObserver<>(t-> accept((T) t.getPayload()), this::error, this::done);
+        return new FlowObserver<>(t-> accept((T) t.getPayload()), this::error, this::done);
+    }
+
+    /**
+     * keep the client call(before start) for the flow control of linked request stream
+     */
+    private final class FlowObserver<V> extends MessageObserver<V> implements ClientResponseObserver<Object, V> {
+
+        FlowObserver(Consumer<V> onNext, Consumer<Throwable> onError, Runnable onCompleted) {
+            super(onNext, onError, onCompleted);
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<Object> requestStream) {
+            requestCall = requestStream;
+            requestStream.setOnReadyHandler(MessageStream.this::requestReady);
+        }
+
     }
 
     @Override
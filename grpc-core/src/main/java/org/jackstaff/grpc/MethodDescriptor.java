@@ -16,17 +16,25 @@
 
 package org.jackstaff.grpc;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
 import io.grpc.Internal;
 import org.jackstaff.grpc.annotation.RpcMethod;
+import org.jackstaff.grpc.annotation.Timeout;
 import org.jackstaff.grpc.exception.ValidationException;
-import org.jackstaff.grpc.internal.InternalGrpc;
+import org.jackstaff.grpc.internal.ArgumentSchema;
+import org.jackstaff.grpc.internal.InternalProto;
+import org.jackstaff.grpc.internal.PacketMarshaller;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -47,11 +55,15 @@ public final class MethodDescriptor {
     private final String sign;
     private final MethodType methodType;
     private final MethodType annotationType;
+    private final boolean future;
+    private final boolean reactive;
+    private final Duration timeout;
     private final int streamIndex;
     private final io.grpc.MethodDescriptor grpcMethod;
     private MethodDescriptor peer;
     private Transform requestTransform;
     private Transform responseTransform;
+    private Transform argumentsTransform;
 
     public MethodDescriptor(Class<?> type, Method method) {
         this(type, method, null, null);
@@ -64,6 +76,10 @@ public final class MethodDescriptor {
         this.bean = bean;
         this.interceptors = interceptors != null ? Collections.unmodifiableList(interceptors) : Collections.emptyList();
         this.annotationType = Optional.ofNullable(method.getAnnotation(RpcMethod.class)).map(RpcMethod::methodType).orElse(null);
+        this.future = CompletableFuture.class.equals(method.getReturnType()) || CompletionStage.class.equals(method.getReturnType());
+        this.reactive = isPublisher(method.getReturnType());
+        this.timeout = Optional.ofNullable(method.getAnnotation(Timeout.class)).
+                map(t -> Duration.ofNanos(t.unit().toNanos(t.value()))).filter(t -> !t.isNegative() && !t.isZero()).orElse(null);
         this.methodType = checkMethodType(annotationType);
         if (annotationType != null && annotationType != this.methodType){
             throw new ValidationException(method + " annotation invalid for "+ methodType+"/"+annotationType);
@@ -90,12 +106,13 @@ public final class MethodDescriptor {
         if (!v2){
             this.requestTransform = Transforms.getPacketTransform();
             this.responseTransform = this.requestTransform;
+            this.argumentsTransform = buildArgumentsTransform();
             return;
         }
         switch (this.methodType){
             case UNARY:
                 this.requestTransform = Transforms.getOrIdentityTransform(method.getParameterTypes()[0]);
-                this.responseTransform = Transforms.getOrIdentityTransform(method.getReturnType());
+                this.responseTransform = Transforms.getOrIdentityTransform(future ? genericReturnType(method) : method.getReturnType());
                 break;
             case BLOCKING_SERVER_STREAMING:
                 //it's default + overload
@@ -106,12 +123,12 @@ public final class MethodDescriptor {
                 //it's default,will call peer method (unary), transform same as server streaming.
             case SERVER_STREAMING:
                 this.requestTransform = Transforms.getOrIdentityTransform(method.getParameterTypes()[0]);
-                this.responseTransform = Transforms.getOrIdentityTransform(genericParameter(method, 1));
+                this.responseTransform = Transforms.getOrIdentityTransform(reactive ? genericReturnType(method) : genericParameter(method, 1));
                 break;
             case CLIENT_STREAMING:
             case BIDI_STREAMING:
-                this.requestTransform = Transforms.getOrIdentityTransform(genericReturnType(method));
-                this.responseTransform = Transforms.getOrIdentityTransform(genericParameter(method, 0));
+                this.requestTransform = Transforms.getOrIdentityTransform(reactive ? genericParameter(method, 0) : genericReturnType(method));
+                this.responseTransform = Transforms.getOrIdentityTransform(reactive ? genericReturnType(method) : genericParameter(method, 0));
                 break;
         }
     }
@@ -125,14 +142,14 @@ public final class MethodDescriptor {
         switch (this.methodType){
             case ASYNCHRONOUS_UNARY:
             case UNARY:
-                return InternalGrpc.getUnaryMethod();
+                return PacketMarshaller.getUnaryMethod();
             case BLOCKING_SERVER_STREAMING:
             case SERVER_STREAMING:
-                return InternalGrpc.getServerStreamingMethod();
+                return PacketMarshaller.getServerStreamingMethod();
             case CLIENT_STREAMING:
-                return InternalGrpc.getClientStreamingMethod();
+                return PacketMarshaller.getClientStreamingMethod();
             case BIDI_STREAMING:
-                return InternalGrpc.getBidiStreamingMethod();
+                return PacketMarshaller.getBidiStreamingMethod();
             default:
                 return null;
         }
@@ -149,6 +166,19 @@ public final class MethodDescriptor {
                 if (Consumer.class.equals(method.getReturnType())) {
                     return MethodType.CLIENT_STREAMING;
                 }
+                if (reactive) {
+                    Class<?>[] types = method.getParameterTypes();
+                    if (types.length == 1 && isPublisher(types[0])) {
+                        return annotationType == MethodType.CLIENT_STREAMING ? MethodType.CLIENT_STREAMING : MethodType.BIDI_STREAMING;
+                    }
+                    if (Arrays.stream(types).anyMatch(MethodDescriptor::isPublisher)) {
+                        throw new ValidationException(method + " Publisher MUST be the ONLY parameter");
+                    }
+                    return MethodType.SERVER_STREAMING;
+                }
+                if (future) {
+                    return MethodType.UNARY;
+                }
                 if (annotationType == MethodType.BLOCKING_SERVER_STREAMING || (v2 && method.isDefault())){
                     return MethodType.BLOCKING_SERVER_STREAMING;
                 }
@@ -206,6 +236,82 @@ public final class MethodDescriptor {
         return responseTransform;
     }
 
+    /**
+     * @param codec the (v1) Packet codec name
+     * @return the Packet transform of the codec, null if it's v2 or the default codec
+     * @throws ValidationException if the codec NOT found
+     */
+    @SuppressWarnings("unchecked")
+    public <Pojo, Proto> Transform<Pojo, Proto> packetTransform(String codec){
+        if (v2 || codec == null || codec.isEmpty() || PacketCodec.PROTOSTUFF.equals(codec)){
+            return null;
+        }
+        Transform transform = Transforms.getPacketTransform(codec);
+        if (transform == null){
+            throw new ValidationException("codec " + codec + " NOT found");
+        }
+        return transform;
+    }
+
+    /**
+     * @return the (v1) request transform by the method's typed schema, null if the arguments are NOT typed
+     * or NOT in the request message (client / bidi streaming)
+     */
+    @SuppressWarnings("unchecked")
+    public <Pojo, Proto> Transform<Pojo, Proto> argumentsTransform(){
+        return argumentsTransform;
+    }
+
+    private Transform<Packet, InternalProto.Packet> buildArgumentsTransform(){
+        switch (methodType) {
+            case UNARY:
+            case ASYNCHRONOUS_UNARY:
+            case SERVER_STREAMING:
+            case BLOCKING_SERVER_STREAMING:
+                break;
+            default:
+                return null;
+        }
+        ArgumentSchema schema = ArgumentSchema.of(method);
+        if (schema == null) {
+            return null;
+        }
+        return new TransformWrapper<>(Packet.class, InternalProto.Packet.class, proto -> new Packet<>(0, schema.decode(proto.getData())),
+                packet -> InternalProto.Packet.newBuilder().setData(schema.encode((Object[]) packet.getPayload())).build());
+    }
+
+
+    /**
+     * @param args the UNARY request arguments
+     * @return the encoded request, Packet data for v1, proto bytes for v2
+     */
+    ByteString requestKey(Object[] args) {
+        if (v2) {
+            return this.<Object, MessageLite>requestTransform().build(args[0]).toByteString();
+        }
+        Transform<Packet<?>, InternalProto.Packet> transform = requestTransform();
+        return transform.build(Packet.boxing(args)).getData();
+    }
+
+    /**
+     * @param result the UNARY result
+     * @return the encoded result, every {@link #decodeResponse(Object)} of it is a new copy
+     */
+    Object encodeResponse(Object result) {
+        if (v2) {
+            return this.<Object, Object>responseTransform().build(result);
+        }
+        Transform<Packet<?>, InternalProto.Packet> transform = responseTransform();
+        return transform.build(Packet.ok(result));
+    }
+
+    Object decodeResponse(Object proto) {
+        if (v2) {
+            return this.<Object, Object>responseTransform().from(proto);
+        }
+        Transform<Packet<?>, InternalProto.Packet> transform = responseTransform();
+        return transform.from((InternalProto.Packet) proto).getPayload();
+    }
 
     MethodType getAnnotationType() {
         return annotationType;
@@ -215,7 +321,37 @@ public final class MethodDescriptor {
         return methodType;
     }
 
+    /**
+     * @return true if it's UNARY method return CompletableFuture / CompletionStage,
+     * the client complete it from the response, the server reply when it's completed.
+     */
+    public boolean isFuture() {
+        return future;
+    }
+
+    /**
+     * @return true if it's streaming method with org.reactivestreams.Publisher:
+     * "Publisher&lt;Resp&gt; m(Req)" server streaming, "Publisher&lt;Resp&gt; m(Publisher&lt;Req&gt;)" bidi (or client) streaming.
+     */
+    public boolean isReactive() {
+        return reactive;
+    }
+
+    /**
+     * @return the method's deadline (@Timeout), null if NOT set
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    private static boolean isPublisher(Class<?> type) {
+        return Reactive.PUBLISHER.equals(type.getName());
+    }
+
     public boolean isBlockingMethod(){
+        if (future) {
+            return false;
+        }
         switch (methodType) {
             case UNARY:
             case BLOCKING_SERVER_STREAMING:
@@ -306,7 +442,8 @@ public final class MethodDescriptor {
                     }
                 }
                 Class<?> c = genericParameter(async, aTypes.length-1);
-                if (c != null && (c.equals(unary.getReturnType()) || c.equals(PRIMITIVE.get(unary.getReturnType())))){
+                Class<?> r = peer.isFuture() ? genericReturnType(unary) : unary.getReturnType();
+                if (c != null && (c.equals(r) || c.equals(PRIMITIVE.get(r)))){
                     continue;
                 }
                 throw new ValidationException(desc.getMethod()+"@AsynchronousUnary peer method argument not match.");
@@ -18,7 +18,6 @@ package org.jackstaff.grpc;
 
 import io.grpc.Internal;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
@@ -30,6 +29,7 @@ public final class Packet<T> {
 
     private static final int OK = 0;
     private static final int EXCEPTION = 1;
+    private static final Object PLACEHOLDER = new Object();
 
     private int command;
     private T payload;
@@ -84,11 +84,21 @@ public final class Packet<T> {
     }
 
     Object[] unboxing(){
-        return Arrays.stream((Object[])payload).map(a->a ==null || a.getClass().equals(Object.class) ? null : a).toArray();
+        Object[] args = (Object[]) payload;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != null && args[i].getClass().equals(Object.class)) {
+                args[i] = null;
+            }
+        }
+        return args;
     }
 
     static Packet<Object[]> boxing(Object[] args){
-        return new Packet<>(0, Arrays.stream(args).map(a-> a == null || a instanceof Consumer ? new Object() : a).toArray());
+        Object[] boxed = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            boxed[i] = args[i] == null || args[i] instanceof Consumer ? PLACEHOLDER : args[i];
+        }
+        return new Packet<>(0, boxed);
     }
 
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * the codec of the (v1, NOT @Protocol) Packet data, protostuff is the default.
+ * the client choose one per authority (spring.grpc.client.xxx.codec), it's advertised in the call's header,
+ * the server decode the requests and encode the responses by the same codec.
+ * implementations are registered by {@link #register(PacketCodec)}, or java.util.ServiceLoader
+ * (META-INF/services/org.jackstaff.grpc.PacketCodec), the server and client should both have it.
+ * @author reco@jackstaff.org
+ */
+public interface PacketCodec {
+
+    /**
+     * protostuff runtime schema, the default
+     */
+    String PROTOSTUFF = "protostuff";
+
+    /**
+     * protostuff graph, keep the shared / cyclic references of the payload
+     */
+    String GRAPH = "graph";
+
+    /**
+     * @return the codec name in the header, should be ascii
+     */
+    String name();
+
+    ByteString encode(Packet<?> packet);
+
+    Packet<?> decode(ByteString data);
+
+    static void register(PacketCodec codec) {
+        Transforms.addPacketCodec(codec);
+    }
+
+}
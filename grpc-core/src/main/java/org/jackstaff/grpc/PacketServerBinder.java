@@ -22,9 +22,7 @@ import org.jackstaff.grpc.internal.HeaderMetadata;
 import org.jackstaff.grpc.internal.InternalGrpc;
 import org.jackstaff.grpc.internal.InternalProto;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -35,6 +33,8 @@ import java.util.stream.Collectors;
 class PacketServerBinder extends InternalGrpc.InternalImplBase {
 
     private final Map<String, MethodDescriptor> methods = new ConcurrentHashMap<>();
+    private Batcher.Admitter admitter = (descriptor, run, reject) -> run.accept(ok -> {});
+    private Set<String> codecs = new HashSet<>(Arrays.asList(PacketCodec.PROTOSTUFF, PacketCodec.GRAPH));
 
     public <T> void register(Class<T> type, T bean, List<Interceptor> interceptors) {
         List<MethodDescriptor> descriptors = Arrays.stream(type.getMethods()).
@@ -43,7 +43,41 @@ class PacketServerBinder extends InternalGrpc.InternalImplBase {
         descriptors.forEach(info -> methods.put(info.getSign(), info));
     }
 
-    private Context buildContext(Packet<?> packet){
+    /**
+     * @param admitter admit the calls of the batch stream, and run them on the executor of their method
+     */
+    void setAdmitter(Batcher.Admitter admitter) {
+        this.admitter = admitter;
+    }
+
+    /**
+     * @param codecs the Packet codecs accepted from the calls' header, the others get UNIMPLEMENTED
+     */
+    void setCodecs(Set<String> codecs) {
+        this.codecs = codecs;
+    }
+
+    MethodDescriptor getMethod(String sign) {
+        return sign != null ? methods.get(sign) : null;
+    }
+
+    /**
+     * the Packet transform of the codec in the call's header, if it's accepted
+     */
+    @SuppressWarnings("unchecked")
+    private Transform<Packet<?>, InternalProto.Packet> transform(){
+        String codec = HeaderMetadata.CODEC.getValue();
+        if (!codecs.contains(codec == null || codec.isEmpty() ? PacketCodec.PROTOSTUFF : codec)){
+            throw Status.UNIMPLEMENTED.withDescription("codec " + codec + " NOT accepted").asRuntimeException();
+        }
+        Transform<Packet<?>, InternalProto.Packet> transform = (Transform<Packet<?>, InternalProto.Packet>) Transforms.getPacketTransform(codec);
+        if (transform == null){
+            throw Status.UNIMPLEMENTED.withDescription("codec " + codec + " NOT supported").asRuntimeException();
+        }
+        return transform;
+    }
+
+    private MethodDescriptor findMethod(){
         String sign = HeaderMetadata.ROOT.getValue();
         if (sign == null || sign.isEmpty()){
             throw Status.INVALID_ARGUMENT.withDescription("method sign Not found:"+sign).asRuntimeException();
@@ -52,20 +86,50 @@ class PacketServerBinder extends InternalGrpc.InternalImplBase {
         if (descriptor ==null){
             throw Status.INVALID_ARGUMENT.withDescription("method Not found").asRuntimeException();
         }
+        return descriptor;
+    }
+
+    private Context buildContext(Packet<?> packet){
+        MethodDescriptor descriptor = findMethod();
         return new Context(descriptor, packet.unboxing(), descriptor.getBean());
     }
 
+    /**
+     * the request arguments, packed by the method's typed schema if the client say so
+     */
+    private Context buildContext(InternalProto.Packet request, Transform<Packet<?>, InternalProto.Packet> transform){
+        MethodDescriptor descriptor = findMethod();
+        if (HeaderMetadata.TYPED.equals(HeaderMetadata.PACKING.getValue())) {
+            transform = descriptor.argumentsTransform();
+            if (transform == null) {
+                throw Status.INVALID_ARGUMENT.withDescription("typed packing NOT supported").asRuntimeException();
+            }
+        }
+        return new Context(descriptor, transform.from(request).unboxing(), descriptor.getBean());
+    }
+
     @Override
     public void unary(InternalProto.Packet request, StreamObserver<InternalProto.Packet> observer) {
-        Transform<Packet<?>, InternalProto.Packet> transform= Transforms.getOrIdentityTransform(Packet.class);
         try {
-            Context context = buildContext(transform.from(request));
+            Transform<Packet<?>, InternalProto.Packet> transform= transform();
+            Context context = buildContext(request, transform);
             MethodDescriptor descriptor = context.getMethodDescriptor();
             Packet<?> result = Utils.walkThrough(context, descriptor.getInterceptors());
             if (result.isException()) {
                 observer.onError(Utils.throwable((Exception) result.getPayload()));
                 return;
             }
+            if (descriptor.isFuture()) {
+                Utils.whenComplete(result, (value, ex) -> {
+                    if (ex != null) {
+                        observer.onError(Utils.throwable(ex));
+                        return;
+                    }
+                    observer.onNext(transform.build(Packet.ok(value)));
+                    observer.onCompleted();
+                });
+                return;
+            }
             observer.onNext(transform.build(result));
             observer.onCompleted();
         }catch (Throwable ex){
@@ -74,15 +138,26 @@ class PacketServerBinder extends InternalGrpc.InternalImplBase {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void serverStreaming(InternalProto.Packet request, StreamObserver<InternalProto.Packet> observer) {
-        Transform<Packet<?>, InternalProto.Packet> transform= Transforms.getOrIdentityTransform(Packet.class);
+        Transform<Packet<?>, InternalProto.Packet> transform;
+        try {
+            transform = transform();
+        }catch (Throwable ex){
+            observer.onError(Utils.throwable(ex));
+            return;
+        }
         MessageStream<?> respStream = new MessageStream<>(new MessageObserver<>(transform.fromObserver(observer)));
         try {
-            Context context = buildContext(transform.from(request)).setStream(respStream);
+            Context context = buildContext(request, transform).setStream(respStream);
             MethodDescriptor descriptor = context.getMethodDescriptor();
             Packet<?> result = Utils.walkThrough(context, descriptor.getInterceptors());
             if (result.isException()) {
                 respStream.error(Utils.throwable((Exception) result.getPayload()));
+                return;
+            }
+            if (descriptor.isReactive()) {
+                Reactive.reply(context, result.getPayload(), observer, (StreamObserver<Object>) (StreamObserver<?>) transform.fromObserver(observer));
             }
         }catch (Throwable ex){
             respStream.error(Utils.throwable(ex));
@@ -91,13 +166,24 @@ class PacketServerBinder extends InternalGrpc.InternalImplBase {
 
     @SuppressWarnings("unchecked")
     public StreamObserver<InternalProto.Packet> clientStreaming(StreamObserver<InternalProto.Packet> observer) {
-        Transform<Packet<?>, InternalProto.Packet> transform= Transforms.getOrIdentityTransform(Packet.class);
+        Transform<Packet<?>, InternalProto.Packet> transform;
+        try {
+            transform = transform();
+        }catch (Throwable ex){
+            observer.onError(Utils.throwable(ex));
+            return null;
+        }
         MessageStream<?> respStream = new MessageStream<>(new MessageObserver<>(transform.fromObserver(observer))).unary();
         try {
             Packet<?> packet = transform.from(InternalProto.Packet.newBuilder().setData(ByteString.copyFrom(HeaderMetadata.BINARY_ROOT.getValue())).build());
             Context context = buildContext(packet).setStream(respStream);
             MethodDescriptor descriptor = context.getMethodDescriptor();
+            Reactive.Inbound<Object> requests = descriptor.isReactive() ? Reactive.requests(context, observer) : null;
             Packet<?> result = Utils.walkThrough(context, descriptor.getInterceptors());
+            if (!result.isException() && requests != null) {
+                Reactive.reply(context, result.getPayload(), observer, (StreamObserver<Object>) (StreamObserver<?>) transform.fromObserver(observer));
+                return transform.buildObserver((StreamObserver<Packet<?>>) (StreamObserver<?>) requests);
+            }
             if (!result.isException()) {
                 MessageStream<Packet<?>> reqStream = MessageStream.build((Consumer<Packet<?>>)result.getPayload()).link(respStream);
                 return transform.buildObserver(reqStream.toPacketStreamObserver());
@@ -111,13 +197,27 @@ class PacketServerBinder extends InternalGrpc.InternalImplBase {
 
     @SuppressWarnings("unchecked")
     public StreamObserver<InternalProto.Packet> bidiStreaming(StreamObserver<InternalProto.Packet> observer) {
-        Transform<Packet<?>, InternalProto.Packet> transform= Transforms.getOrIdentityTransform(Packet.class);
+        if (Batcher.SIGN.equals(HeaderMetadata.ROOT.getValue())) {
+            return Batcher.serve(methods, admitter, observer);
+        }
+        Transform<Packet<?>, InternalProto.Packet> transform;
+        try {
+            transform = transform();
+        }catch (Throwable ex){
+            observer.onError(Utils.throwable(ex));
+            return null;
+        }
         MessageStream<?> respStream = new MessageStream<>(new MessageObserver<>(transform.fromObserver(observer)));
         try {
             Packet<?> packet = transform.from(InternalProto.Packet.newBuilder().setData(ByteString.copyFrom(HeaderMetadata.BINARY_ROOT.getValue())).build());
             Context context = buildContext(packet).setStream(respStream);
             MethodDescriptor descriptor = context.getMethodDescriptor();
+            Reactive.Inbound<Object> requests = descriptor.isReactive() ? Reactive.requests(context, observer) : null;
             Packet<?> result = Utils.walkThrough(context, descriptor.getInterceptors());
+            if (!result.isException() && requests != null) {
+                Reactive.reply(context, result.getPayload(), observer, (StreamObserver<Object>) (StreamObserver<?>) transform.fromObserver(observer));
+                return transform.buildObserver((StreamObserver<Packet<?>>) (StreamObserver<?>) requests);
+            }
             if (!result.isException()) {
                 MessageStream<Packet<?>> reqStream = MessageStream.build((Consumer<Packet<?>>)result.getPayload()).link(respStream);
                 return transform.buildObserver(reqStream.toPacketStreamObserver());
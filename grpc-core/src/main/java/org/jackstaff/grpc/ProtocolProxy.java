@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import org.jackstaff.grpc.exception.ValidationException;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.Function;
+
+/**
+ * the base class of the "protocol interface" implementation generated by grpc-generator (named type + "Proxy"),
+ * for the interfaces generated from .proto, and the hand-written ones with @GenerateProxy.
+ * each method dispatch straight to its resolved call, no InvocationHandler / Method lookup per call.
+ * Client prefer it to the jdk Proxy when it's found, and to a provided ProxyCreator only if it's asked to.
+ * @see org.jackstaff.grpc.annotation.GenerateProxy
+ * @author reco@jackstaff.org
+ * @see Client.ProxyCreator
+ */
+public abstract class ProtocolProxy {
+
+    public static final String SUFFIX = "Proxy";
+
+    /**
+     * the resolved call path of one protocol method
+     */
+    @FunctionalInterface
+    public interface Call {
+        Object call(Object proxy, Object[] args) throws Exception;
+    }
+
+    private final Function<Method, Call> calls;
+
+    protected ProtocolProxy(Function<Method, Call> calls) {
+        this.calls = calls;
+    }
+
+    protected final Call resolve(Class<?> type, String name, Class<?>... parameterTypes) {
+        Call call;
+        try {
+            call = calls.apply(type.getMethod(name, parameterTypes));
+        } catch (NoSuchMethodException ex) {
+            throw new ValidationException(type.getName() + "." + name + " NOT found, regenerate " + getClass().getName(), ex);
+        }
+        if (call == null) {
+            throw new ValidationException(type.getName() + "." + name + " is NOT a protocol method");
+        }
+        return call;
+    }
+
+    protected final Object invoke(Call call, Object... args) {
+        try {
+            return call.call(this, args);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    static Object newInstance(Class<?> type, Function<Method, Call> calls) {
+        Class<?> proxyClass;
+        try {
+            proxyClass = Class.forName(type.getName() + SUFFIX, true, type.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+        if (!type.isAssignableFrom(proxyClass) || !ProtocolProxy.class.isAssignableFrom(proxyClass)) {
+            return null;
+        }
+        try {
+            return proxyClass.getConstructor(Function.class).newInstance(calls);
+        } catch (ReflectiveOperationException ex) {
+            throw new ValidationException("new " + proxyClass.getName() + " fail", ex);
+        }
+    }
+
+}
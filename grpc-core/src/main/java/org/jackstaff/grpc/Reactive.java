@@ -0,0 +1,310 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import io.grpc.stub.*;
+import org.jackstaff.grpc.internal.HeaderMetadata;
+import org.jackstaff.grpc.internal.InternalProto;
+import org.jackstaff.grpc.internal.Stub;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Reactive Streams (org.reactivestreams, optional dependency) for streaming protocol methods,
+ * the subscriber's demand is the gRPC call's inbound flow control, the publisher is pulled only when the call is ready.
+ * it's loaded only when the protocol has Publisher methods.
+ * @author reco@jackstaff.org
+ * @see MethodDescriptor#isReactive()
+ */
+final class Reactive {
+
+    static final String PUBLISHER = "org.reactivestreams.Publisher";
+
+    /**
+     * the inbound messages of a call as a Publisher (single subscriber),
+     * the subscriber's request(n) is the call's request(n), so at most 1 (the call's initial request) is buffered
+     */
+    static final class Inbound<T> implements Publisher<T>, Subscription, ClientResponseObserver<Object, Object> {
+
+        private final Function<Object, T> mapper;
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile CallStreamObserver<?> call;
+        private volatile Subscriber<? super T> subscriber;
+        private volatile Outbound<?> outbound;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private Throwable error;
+        private boolean terminated;
+
+        Inbound(Function<Object, T> mapper) {
+            this.mapper = mapper;
+        }
+
+        Inbound<T> bind(CallStreamObserver<?> call) {
+            this.call = call;
+            call.disableAutoInboundFlowControl();
+            return this;
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void beforeStart(ClientCallStreamObserver requestStream) {
+            bind(requestStream);
+            if (outbound != null) {
+                outbound.bind(requestStream);
+            }
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            synchronized (this) {
+                if (this.subscriber == null) {
+                    this.subscriber = subscriber;
+                    subscriber.onSubscribe(this);
+                    drain();
+                    return;
+                }
+            }
+            subscriber.onSubscribe(this);
+            subscriber.onError(new IllegalStateException("only one subscriber allowed"));
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                onError(new IllegalArgumentException("request " + n + ", MUST be positive"));
+                return;
+            }
+            demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            call.request((int) Math.min(n, Integer.MAX_VALUE));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            queue.clear();
+            if (call instanceof ClientCallStreamObserver) {
+                ((ClientCallStreamObserver<?>) call).cancel("subscription cancelled", null);
+            }
+        }
+
+        @Override
+        public void onNext(Object value) {
+            T message = mapper.apply(value);
+            if (message == null) {
+                call.request(1);
+                return;
+            }
+            queue.offer(message);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            drain();
+            cancelOutbound();
+        }
+
+        @Override
+        public void onCompleted() {
+            done = true;
+            drain();
+            cancelOutbound();
+        }
+
+        private void cancelOutbound() {
+            if (outbound != null) {
+                outbound.cancel();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                Subscriber<? super T> subscriber = this.subscriber;
+                if (subscriber != null && !cancelled && !terminated) {
+                    while (demand.get() > 0 && !queue.isEmpty()) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(queue.poll());
+                    }
+                    if (done && queue.isEmpty()) {
+                        terminated = true;
+                        if (error != null) {
+                            subscriber.onError(error);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+    }
+
+    /**
+     * write a Publisher to a call, it's pulled PREFETCH messages at a time, and only when the call is ready
+     */
+    static final class Outbound<T> implements Subscriber<T>, Runnable {
+
+        private static final int PREFETCH = 16;
+
+        private final Function<Object, Object> mapper;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile StreamObserver<Object> target;
+        private volatile CallStreamObserver<?> call;
+        private volatile Subscription subscription;
+        private volatile boolean cancelled;
+
+        Outbound(Function<Object, Object> mapper) {
+            this.mapper = mapper;
+        }
+
+        Outbound<T> bind(CallStreamObserver<?> call) {
+            this.call = call;
+            call.setOnReadyHandler(this);
+            return this;
+        }
+
+        Outbound<T> target(StreamObserver<Object> target) {
+            this.target = target;
+            return this;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (this.subscription != null || cancelled) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            run();
+        }
+
+        /**
+         * the onReady handler
+         */
+        @Override
+        public void run() {
+            Subscription subscription = this.subscription;
+            if (subscription != null && !cancelled && call.isReady() && outstanding.compareAndSet(0, PREFETCH)) {
+                subscription.request(PREFETCH);
+            }
+        }
+
+        @Override
+        public void onNext(T value) {
+            target.onNext(mapper.apply(value));
+            if (outstanding.decrementAndGet() == 0) {
+                run();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            target.onError(Utils.throwable(t));
+        }
+
+        @Override
+        public void onComplete() {
+            target.onCompleted();
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+    }
+
+    private static Object payload(Object packet) {
+        return ((Packet<?>) packet).getPayload();
+    }
+
+    /**
+     * the client side call of Publisher method
+     * @return the response Publisher
+     */
+    @SuppressWarnings("unchecked")
+    static Publisher<?> call(Context context, Stub<?, Object, Object> stub) {
+        MethodDescriptor descriptor = context.getMethodDescriptor();
+        Object[] args = context.arguments();
+        boolean v2 = descriptor.isV2();
+        Inbound<Object> inbound = new Inbound<>(v2 ? Function.identity() : Reactive::payload);
+        stub.attachDefaultDeadline();
+        if (!v2) {
+            stub.attach(HeaderMetadata.ROOT, descriptor.getSign());
+        }
+        if (descriptor.getMethodType() == MethodType.SERVER_STREAMING) {
+            stub.asyncServerStreaming(v2 ? args[0] : Packet.boxing(args), inbound);
+            return inbound;
+        }
+        if (!v2) {
+            Transform<Packet<?>, InternalProto.Packet> transform = stub.requestTransform();
+            stub.attach(HeaderMetadata.BINARY_ROOT, transform.build(Packet.boxing(new Object[args.length])).getData().toByteArray());
+        }
+        Outbound<Object> outbound = new Outbound<>(v2 ? Function.identity() : Packet::ok);
+        inbound.outbound = outbound;
+        StreamObserver<Object> requests = descriptor.getMethodType() == MethodType.CLIENT_STREAMING ?
+                stub.asyncClientStreaming(inbound) : stub.asyncBidiStreaming(inbound);
+        ((Publisher<Object>) args[0]).subscribe(outbound.target(requests));
+        return inbound;
+    }
+
+    /**
+     * the server side request Publisher of client/bidi streaming, the method's only argument
+     * @return the request observer of the call
+     */
+    static Inbound<Object> requests(Context context, StreamObserver<?> observer) {
+        Inbound<Object> inbound = new Inbound<>(context.getMethodDescriptor().isV2() ? Function.identity() : Reactive::payload);
+        context.arguments()[0] = inbound.bind((CallStreamObserver<?>) observer);
+        return inbound;
+    }
+
+    /**
+     * the server side reply, write the returned Publisher as the call is ready, cancel it when the call is cancelled
+     */
+    @SuppressWarnings("unchecked")
+    static void reply(Context context, Object publisher, StreamObserver<?> observer, StreamObserver<Object> target) {
+        if (publisher == null) {
+            throw Status.INTERNAL.withDescription(context.getMethod() + " return null Publisher").asRuntimeException();
+        }
+        Outbound<Object> outbound = new Outbound<>(context.getMethodDescriptor().isV2() ? Function.identity() : Packet::ok).
+                target(target).bind((CallStreamObserver<?>) observer);
+        ((ServerCallStreamObserver<?>) observer).setOnCancelHandler(outbound::cancel);
+        ((Publisher<Object>) publisher).subscribe(outbound);
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import org.jackstaff.grpc.annotation.ClientCache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the client side response cache of one UNARY method, W-TinyLFU style:
+ * new entries go into a small LRU window, an entry evicted from the window is admitted into the main LRU
+ * only when it's requested more often (count-min sketch) than the main's victim.
+ * entries are the encoded request -> the encoded(proto) response, decoded on every hit.
+ * @author reco@jackstaff.org
+ * @see ClientCache
+ */
+public final class ResponseCache {
+
+    private static final class Entry {
+
+        private final ByteString key;
+        private final Object proto;
+        private final int weight;
+        private final long expireAt;
+
+        Entry(ByteString key, Object proto, int weight, long expireAt) {
+            this.key = key;
+            this.proto = proto;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+
+    }
+
+    /**
+     * 4 bit count-min sketch, all counters are halved every "sampleSize" increments to keep it fresh
+     */
+    private static final class FrequencySketch {
+
+        private final byte[][] table = new byte[4][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int size) {
+            int length = Integer.highestOneBit(Math.max(256, Math.min(size, 1 << 20)) - 1) << 1;
+            for (int i = 0; i < table.length; i++) {
+                table[i] = new byte[length];
+            }
+            this.mask = length - 1;
+            this.sampleSize = length * 10;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash + row) * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        void increment(ByteString key) {
+            int hash = key.hashCode();
+            for (int i = 0; i < table.length; i++) {
+                int index = index(hash, i);
+                if (table[i][index] < 15) {
+                    table[i][index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                for (byte[] row : table) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(ByteString key) {
+            int hash = key.hashCode();
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < table.length; i++) {
+                frequency = Math.min(frequency, table[i][index(hash, i)]);
+            }
+            return frequency;
+        }
+
+    }
+
+    private final MethodDescriptor descriptor;
+    private final long ttl;
+    private final long maxBytes;
+    private final long maxWindowBytes;
+    private final LinkedHashMap<ByteString, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<ByteString, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long windowBytes;
+    private long mainBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ResponseCache(MethodDescriptor descriptor, ClientCache config) {
+        this.descriptor = descriptor;
+        this.ttl = TimeUnit.SECONDS.toNanos(config.ttl());
+        this.maxBytes = config.maxBytes();
+        this.maxWindowBytes = Math.max(1, maxBytes / 100);
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxBytes / 64));
+    }
+
+    Object call(Object[] args, Callable<Object> loader) throws Exception {
+        ByteString key = descriptor.requestKey(args);
+        Object proto = get(key);
+        if (proto != null) {
+            return descriptor.decodeResponse(proto);
+        }
+        Object result = loader.call();
+        if (result != null) {
+            proto = descriptor.encodeResponse(result);
+            put(key, proto, key.size() + (proto instanceof MessageLite ? ((MessageLite) proto).getSerializedSize() : 0));
+        }
+        return result;
+    }
+
+    private synchronized Object get(ByteString key) {
+        sketch.increment(key);
+        Entry entry = window.get(key);
+        if (entry == null) {
+            entry = main.get(key);
+        }
+        if (entry != null && entry.expireAt - System.nanoTime() <= 0) {
+            remove(entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.proto;
+    }
+
+    private synchronized void put(ByteString key, Object proto, int weight) {
+        if (weight > maxBytes) {
+            return;
+        }
+        Entry old = window.containsKey(key) ? window.get(key) : main.get(key);
+        if (old != null) {
+            remove(old);
+        }
+        window.put(key, new Entry(key, proto, weight, System.nanoTime() + ttl));
+        windowBytes += weight;
+        while (windowBytes > maxWindowBytes && !window.isEmpty()) {
+            Entry candidate = removeEldest(window);
+            windowBytes -= candidate.weight;
+            admit(candidate);
+        }
+    }
+
+    private void admit(Entry candidate) {
+        int frequency = sketch.frequency(candidate.key);
+        while (mainBytes + candidate.weight > maxBytes - windowBytes && !main.isEmpty()) {
+            Entry victim = main.values().iterator().next();
+            if (victim.expireAt - System.nanoTime() > 0 && sketch.frequency(victim.key) >= frequency) {
+                evictions++;
+                return;
+            }
+            removeEldest(main);
+            mainBytes -= victim.weight;
+            evictions++;
+        }
+        if (mainBytes + candidate.weight > maxBytes - windowBytes) {
+            evictions++;
+            return;
+        }
+        main.put(candidate.key, candidate);
+        mainBytes += candidate.weight;
+    }
+
+    private static Entry removeEldest(LinkedHashMap<ByteString, Entry> map) {
+        Iterator<Map.Entry<ByteString, Entry>> iterator = map.entrySet().iterator();
+        Entry eldest = iterator.next().getValue();
+        iterator.remove();
+        return eldest;
+    }
+
+    private void remove(Entry entry) {
+        if (window.remove(entry.key) != null) {
+            windowBytes -= entry.weight;
+        } else if (main.remove(entry.key) != null) {
+            mainBytes -= entry.weight;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytes() {
+        return windowBytes + mainBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResponseCache{" +
+                "method=" + descriptor.getMethod().getName() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", bytes=" + (windowBytes + mainBytes) +
+                '}';
+    }
+
+}
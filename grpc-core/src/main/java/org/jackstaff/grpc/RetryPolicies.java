@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc;
+
+import org.jackstaff.grpc.annotation.Retry;
+import org.jackstaff.grpc.configuration.ClientConfig;
+import org.jackstaff.grpc.configuration.RetryConfig;
+import org.jackstaff.grpc.exception.ValidationException;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * the gRPC service config (retryPolicy / retryThrottling) of one authority,
+ * from the client config's retryPolicies, and the @Retry methods of its protocols.
+ * numbers are Double, durations are "seconds" strings, as gRPC's json parser do.
+ * @author reco@jackstaff.org
+ * @see Retry
+ * @see RetryConfig
+ */
+final class RetryPolicies {
+
+    /**
+     * gRPC's bound of retryThrottling.maxTokens
+     */
+    private static final int MAX_TOKENS = 1000;
+
+    private RetryPolicies() {
+    }
+
+    /**
+     * @return null if no retry policy
+     */
+    static Map<String, Object> serviceConfig(ClientConfig cfg, Collection<MethodDescriptor> descriptors) {
+        List<Map<String, Object>> methodConfig = new ArrayList<>();
+        Optional.ofNullable(cfg.getRetryPolicies()).ifPresent(list -> list.forEach(retry -> {
+            if (retry.getName() == null || retry.getName().isEmpty()) {
+                throw new ValidationException("client retry policy name is empty");
+            }
+            int index = retry.getName().indexOf('/');
+            methodConfig.add(methodConfig(index < 0 ? retry.getName() : retry.getName().substring(0, index),
+                    index < 0 ? null : retry.getName().substring(index + 1),
+                    retryPolicy(retry.getMaxAttempts(), codes(retry), retry.getInitialBackoff(),
+                            retry.getMaxBackoff(), retry.getBackoffMultiplier())));
+        }));
+        descriptors.stream().filter(descriptor -> descriptor.getMethod().isAnnotationPresent(Retry.class)).forEach(descriptor -> {
+            if (!descriptor.isV2()) {
+                throw new ValidationException(descriptor.getMethod() + " @Retry only for @Protocol (v2) method");
+            }
+            Retry retry = descriptor.getMethod().getAnnotation(Retry.class);
+            List<String> codes = Arrays.stream(retry.codes()).mapToObj(code -> {
+                if (code <= Status.Code.OK || code > Status.Code.UNAUTHENTICATED) {
+                    throw new ValidationException(descriptor.getMethod() + " @Retry code " + code + " is NOT gRPC's");
+                }
+                return io.grpc.Status.fromCodeValue(code).getCode().name();
+            }).collect(Collectors.toList());
+            String fullMethodName = descriptor.grpcMethod().getFullMethodName();
+            int index = fullMethodName.lastIndexOf('/');
+            methodConfig.add(methodConfig(fullMethodName.substring(0, index), fullMethodName.substring(index + 1),
+                    retryPolicy(retry.maxAttempts(), codes, retry.initialBackoff(), retry.maxBackoff(), retry.multiplier())));
+        });
+        if (methodConfig.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> serviceConfig = new LinkedHashMap<>();
+        serviceConfig.put("methodConfig", methodConfig);
+        if (cfg.getRetryTokenRatio() < 0 || Double.isNaN(cfg.getRetryTokenRatio()) || Double.isInfinite(cfg.getRetryTokenRatio())) {
+            throw new ValidationException("client retry token ratio " + cfg.getRetryTokenRatio() + " should be 0 (unlimited) or positive");
+        }
+        if (cfg.getRetryTokenRatio() > 0) {
+            if (cfg.getRetryMaxTokens() <= 0 || cfg.getRetryMaxTokens() > MAX_TOKENS) {
+                throw new ValidationException("client retry max tokens " + cfg.getRetryMaxTokens() + " should be in (0, " + MAX_TOKENS + "]");
+            }
+            Map<String, Object> throttling = new LinkedHashMap<>();
+            throttling.put("maxTokens", (double) cfg.getRetryMaxTokens());
+            throttling.put("tokenRatio", cfg.getRetryTokenRatio());
+            serviceConfig.put("retryThrottling", throttling);
+        }
+        return serviceConfig;
+    }
+
+    /**
+     * @return the gRPC status code names of the config, NOT OK
+     */
+    private static List<String> codes(RetryConfig retry) {
+        return Optional.ofNullable(retry.getRetryableStatusCodes()).orElse(Collections.emptyList()).stream().map(name -> {
+            io.grpc.Status.Code code = Arrays.stream(io.grpc.Status.Code.values()).
+                    filter(c -> name != null && c.name().equals(name.trim().toUpperCase())).findAny().orElse(null);
+            if (code == null || code == io.grpc.Status.Code.OK) {
+                throw new ValidationException("client retry policy " + retry.getName() + " status code " + name + " is NOT gRPC's");
+            }
+            return code.name();
+        }).collect(Collectors.toList());
+    }
+
+    private static Map<String, Object> methodConfig(String service, String method, Map<String, Object> retryPolicy) {
+        Map<String, Object> name = new LinkedHashMap<>();
+        name.put("service", service);
+        Optional.ofNullable(method).filter(m -> !m.isEmpty()).ifPresent(m -> name.put("method", m));
+        Map<String, Object> methodConfig = new LinkedHashMap<>();
+        methodConfig.put("name", Collections.singletonList(name));
+        methodConfig.put("retryPolicy", retryPolicy);
+        return methodConfig;
+    }
+
+    private static Map<String, Object> retryPolicy(int maxAttempts, List<String> codes, long initialBackoff, long maxBackoff, double multiplier) {
+        if (maxAttempts < 2 || codes == null || codes.isEmpty() || initialBackoff <= 0 || maxBackoff <= 0 || multiplier <= 0) {
+            throw new ValidationException("retry policy: maxAttempts > 1, codes NOT empty, backoff and multiplier positive");
+        }
+        Map<String, Object> retryPolicy = new LinkedHashMap<>();
+        retryPolicy.put("maxAttempts", (double) maxAttempts);
+        retryPolicy.put("initialBackoff", seconds(initialBackoff));
+        retryPolicy.put("maxBackoff", seconds(maxBackoff));
+        retryPolicy.put("backoffMultiplier", multiplier);
+        retryPolicy.put("retryableStatusCodes", new ArrayList<>(codes));
+        return retryPolicy;
+    }
+
+    private static String seconds(long millis) {
+        return String.format("%d.%03ds", millis / 1000, millis % 1000);
+    }
+
+}
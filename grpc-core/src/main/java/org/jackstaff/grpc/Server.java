@@ -19,17 +19,30 @@ package org.jackstaff.grpc;
 import io.grpc.*;
 import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollChannelOption;
 import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
+import org.jackstaff.grpc.annotation.MaxConcurrency;
+import org.jackstaff.grpc.configuration.Dispatcher;
+import org.jackstaff.grpc.configuration.Limit;
 import org.jackstaff.grpc.configuration.ServerConfig;
+import org.jackstaff.grpc.configuration.Transport;
 import org.jackstaff.grpc.exception.ValidationException;
 import org.jackstaff.grpc.internal.HeaderMetadata;
+import org.jackstaff.grpc.internal.PacketMarshaller;
 
 import java.io.File;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.lang.reflect.Method;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * the server
@@ -40,7 +53,271 @@ import java.util.concurrent.TimeUnit;
  */
 public class Server {
 
+    /**
+     * run the call's callbacks on the bean's executor, one by one like gRPC does
+     */
+    private static final class DispatchListener<ReqT, RespT> extends ServerCall.Listener<ReqT> {
+
+        private final Executor serial;
+        private final ServerCall<ReqT, RespT> call;
+        private ServerCall.Listener<ReqT> delegate;
+        private boolean closed;
+
+        DispatchListener(Executor serial, ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            this.serial = io.grpc.Context.currentContextExecutor(serial);
+            this.call = call;
+            this.serial.execute(() -> {
+                try {
+                    delegate = next.startCall(call, headers);
+                } catch (RuntimeException ex) {
+                    close(ex);
+                }
+            });
+        }
+
+        /**
+         * run the callback on the serial executor, an exception closes the call, the later callbacks are ignored
+         */
+        private void execute(Consumer<ServerCall.Listener<ReqT>> callback) {
+            serial.execute(() -> {
+                if (closed) {
+                    return;
+                }
+                try {
+                    callback.accept(delegate);
+                } catch (RuntimeException ex) {
+                    close(ex);
+                }
+            });
+        }
+
+        private void close(RuntimeException ex) {
+            closed = true;
+            try {
+                call.close(io.grpc.Status.fromThrowable(ex), new Metadata());
+            } catch (RuntimeException ignore) {
+                //already closed
+            }
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            execute(listener -> listener.onMessage(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            execute(ServerCall.Listener::onHalfClose);
+        }
+
+        @Override
+        public void onCancel() {
+            execute(ServerCall.Listener::onCancel);
+        }
+
+        @Override
+        public void onComplete() {
+            execute(ServerCall.Listener::onComplete);
+        }
+
+        @Override
+        public void onReady() {
+            execute(ServerCall.Listener::onReady);
+        }
+
+    }
+
+    /**
+     * buffer the call's callbacks till it's admitted by the bulkheads, then forward them in order
+     */
+    private static final class GateListener<ReqT> extends ServerCall.Listener<ReqT> {
+
+        private final Runnable onTerminate;
+        private List<Consumer<ServerCall.Listener<ReqT>>> pending = new ArrayList<>();
+        private volatile ServerCall.Listener<ReqT> delegate;
+
+        GateListener(Runnable onTerminate) {
+            this.onTerminate = onTerminate;
+        }
+
+        void start(ServerCall.Listener<ReqT> listener) {
+            while (true) {
+                List<Consumer<ServerCall.Listener<ReqT>>> callbacks;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        pending = null;
+                        delegate = listener;
+                        return;
+                    }
+                    callbacks = pending;
+                    pending = new ArrayList<>();
+                }
+                callbacks.forEach(callback -> callback.accept(listener));
+            }
+        }
+
+        private void forward(Consumer<ServerCall.Listener<ReqT>> callback) {
+            if (delegate == null) {
+                synchronized (this) {
+                    if (pending != null) {
+                        pending.add(callback);
+                        return;
+                    }
+                }
+            }
+            callback.accept(delegate);
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            forward(listener -> listener.onMessage(message));
+        }
+
+        @Override
+        public void onHalfClose() {
+            forward(ServerCall.Listener::onHalfClose);
+        }
+
+        @Override
+        public void onCancel() {
+            onTerminate.run();
+            forward(ServerCall.Listener::onCancel);
+        }
+
+        @Override
+        public void onComplete() {
+            onTerminate.run();
+            forward(ServerCall.Listener::onComplete);
+        }
+
+        @Override
+        public void onReady() {
+            forward(ServerCall.Listener::onReady);
+        }
+
+    }
+
+    /**
+     * run the task on the current thread, the tasks it submits run after it, NOT nested in it.
+     * the queued calls admitted by a DIRECT executor don't grow the stack of the releasing thread.
+     */
+    private static final class Trampoline implements Executor {
+
+        private static final Trampoline INSTANCE = new Trampoline();
+        private static final ThreadLocal<Queue<Runnable>> QUEUE = new ThreadLocal<>();
+
+        @Override
+        public void execute(Runnable task) {
+            Queue<Runnable> queue = QUEUE.get();
+            if (queue != null) {
+                queue.add(task);
+                return;
+            }
+            queue = new ArrayDeque<>();
+            QUEUE.set(queue);
+            RuntimeException failure = null;
+            try {
+                for (; task != null; task = queue.poll()) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException ex) {
+                        failure = failure != null ? failure : ex;
+                    }
+                }
+            } finally {
+                QUEUE.remove();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+    }
+
+    /**
+     * acquire the bulkheads (service, method) one by one, release them once when the call is closed/cancelled
+     */
+    private static final class Admission implements Runnable {
+
+        private final List<Bulkhead> bulkheads;
+        private final Executor executor;
+        private Runnable onAdmit;
+        private Consumer<Bulkhead> onReject;
+        private int acquired;
+        private boolean released;
+
+        Admission(List<Bulkhead> bulkheads, Executor executor) {
+            this.bulkheads = bulkheads;
+            this.executor = executor;
+        }
+
+        void admit(Runnable onAdmit, Consumer<Bulkhead> onReject) {
+            this.onAdmit = onAdmit;
+            this.onReject = onReject;
+            next();
+        }
+
+        private void next() {
+            Bulkhead bulkhead;
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                if (acquired == bulkheads.size()) {
+                    bulkhead = null;
+                } else {
+                    bulkhead = bulkheads.get(acquired);
+                }
+            }
+            if (bulkhead == null) {
+                onAdmit.run();
+            } else if (!bulkhead.acquire(this, executor)) {
+                onReject.accept(bulkhead);
+            }
+        }
+
+        /**
+         * admitted by the current bulkhead
+         */
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (released) {
+                    bulkheads.get(acquired).release();
+                    return;
+                }
+                acquired++;
+            }
+            next();
+        }
+
+        void release() {
+            int acquired;
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                acquired = this.acquired;
+            }
+            if (acquired < bulkheads.size()) {
+                bulkheads.get(acquired).cancel(this);
+            }
+            for (int i = 0; i < acquired; i++) {
+                bulkheads.get(i).release();
+            }
+        }
+
+    }
+
     private final Map<String, ServerBinder<?>> binders = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Bulkhead> serviceBulkheads = new ConcurrentHashMap<>();
+    private final Map<Method, Bulkhead> methodBulkheads = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Dispatcher> dispatchers = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Compression>> compressions = new ConcurrentHashMap<>();
+    private final List<EventLoopGroup> eventLoops = new ArrayList<>();
+    private AdaptiveLimiter limiter;
+    private final Map<Dispatcher, DispatchExecutor> executors = new ConcurrentHashMap<>();
     private PacketServerBinder packetBinder;
     private io.grpc.Server server;
 
@@ -52,9 +329,50 @@ public class Server {
      * @param <T> T
      */
     public synchronized <T> void register(Class<T> type, T bean, List<Interceptor> interceptors) {
+        register(type, bean, interceptors, null);
+    }
+
+    /**
+     * register a "protocol interface" type which implements by bean, run on its own Dispatcher
+     * @param type the "protocol interface"
+     * @param bean the implements bean
+     * @param interceptors the Interceptor list
+     * @param dispatcher the Dispatcher of this bean, null or INHERIT: the server's (ServerConfig),
+     *                   DIRECT only if the server's is DIRECT too
+     * @param <T> T
+     */
+    public synchronized <T> void register(Class<T> type, T bean, List<Interceptor> interceptors, Dispatcher dispatcher) {
+        register(type, bean, interceptors, dispatcher, 0, 0);
+    }
+
+    /**
+     * register a "protocol interface" type which implements by bean, run on its own Dispatcher, with its bulkhead
+     * @param type the "protocol interface"
+     * @param bean the implements bean
+     * @param interceptors the Interceptor list
+     * @param dispatcher the Dispatcher of this bean, null or INHERIT: the server's (ServerConfig),
+     *                   DIRECT only if the server's is DIRECT too
+     * @param maxConcurrency max in-flight calls of this service, 0: the bean class's @MaxConcurrency if any
+     * @param maxQueue max calls wait for the in-flight ones
+     * @param <T> T
+     * @see MaxConcurrency
+     */
+    public synchronized <T> void register(Class<T> type, T bean, List<Interceptor> interceptors, Dispatcher dispatcher,
+                                          int maxConcurrency, int maxQueue) {
         if (!type.isInstance(bean)){
             throw new ValidationException(bean.getClass().getName()+ " does NOT instanceof "+type.getName());
         }
+        Optional.ofNullable(dispatcher).filter(d -> d != Dispatcher.INHERIT).ifPresent(d -> dispatchers.put(type, d));
+        if (maxConcurrency > 0) {
+            serviceBulkheads.put(type, new Bulkhead(type.getName(), maxConcurrency, maxQueue));
+        } else {
+            Optional.ofNullable(bean.getClass().getAnnotation(MaxConcurrency.class)).ifPresent(limit ->
+                    serviceBulkheads.put(type, new Bulkhead(type.getName(), limit.value(), limit.queue())));
+        }
+        for (Method method : type.getMethods()) {
+            Optional.ofNullable(maxConcurrency(bean, method)).ifPresent(limit -> methodBulkheads.put(method,
+                    new Bulkhead(type.getName() + "/" + method.getName(), limit.value(), limit.queue())));
+        }
         if (Utils.isV2(type)){
             ServerBinder<T> binder = new ServerBinder<>(type, bean, interceptors);
             if (binders.containsKey(binder.getName())){
@@ -76,11 +394,44 @@ public class Server {
      */
     public NettyServerBuilder serverBuilder(ServerConfig cfg) {
         NettyServerBuilder builder = NettyServerBuilder.forPort(cfg.getPort());
-        binders.values().stream().map(this::bindService).forEach(builder::addService);
-        Optional.ofNullable(packetBinder).map(this::bindService).ifPresent(builder::addService);
+        validateDispatchers(cfg);
+        DispatchExecutor executor = executor(cfg, cfg.getDispatcher());
+        builder.executor(executor);
+        Optional.ofNullable(packetBinder).ifPresent(binder -> binder.setAdmitter((descriptor, run, reject) ->
+                admit(cfg, Optional.ofNullable(dispatch(cfg, descriptor.getType())).orElse(executor), descriptor, run, reject)));
+        Optional.ofNullable(packetBinder).ifPresent(binder -> binder.setCodecs(codecs(cfg)));
+        if (cfg.getLimit() != null && cfg.getLimit() != Limit.NONE) {
+            limiter = new AdaptiveLimiter(cfg.getLimit(), cfg.getMaxLimit());
+        }
+        binders.values().stream().map(binder -> bindService(cfg, binder, (method, headers) ->
+                binder.getMethod(method.getFullMethodName()))).forEach(builder::addService);
+        //the Internal service's methods use PacketMarshaller, NOT the generated protobuf one
+        Optional.ofNullable(packetBinder).map(binder -> bindService(cfg, () -> PacketMarshaller.bindService(binder.bindService()),
+                (method, headers) -> binder.getMethod(HeaderMetadata.ROOT.getValue(headers)))).ifPresent(builder::addService);
         if (cfg.getMaxInboundMessageSize() >512*1024){
             builder.maxInboundMessageSize(cfg.getMaxInboundMessageSize());
         }
+        builder.compressorRegistry(Compression.compressors()).decompressorRegistry(Compression.decompressors());
+        if (cfg.isReusePort() && !EventLoops.isEpoll(cfg.getTransport())) {
+            throw new ValidationException("reuse-port needs transport EPOLL, and native epoll available, but " + cfg.getTransport());
+        }
+        if (cfg.getTransport() != null && cfg.getTransport() != Transport.DEFAULT) {
+            boolean epoll = EventLoops.isEpoll(cfg.getTransport());
+            EventLoopGroup boss = EventLoops.group(epoll, Math.max(1, cfg.getBossThreads()), "jackstaff-boss");
+            EventLoopGroup worker = EventLoops.group(epoll, cfg.getWorkerThreads(), "jackstaff-worker");
+            eventLoops.add(boss);
+            eventLoops.add(worker);
+            builder.channelType(EventLoops.serverChannelType(epoll)).bossEventLoopGroup(boss).workerEventLoopGroup(worker);
+            if (cfg.isReusePort()) {
+                builder.withChildOption(EpollChannelOption.SO_REUSEPORT, true);
+            }
+        }
+        if (cfg.getFlowControlWindow() > 0) {
+            builder.flowControlWindow(cfg.getFlowControlWindow());
+        }
+        if (cfg.getMaxConcurrentCallsPerConnection() > 0) {
+            builder.maxConcurrentCallsPerConnection(cfg.getMaxConcurrentCallsPerConnection());
+        }
         if (cfg.getKeepAliveTimeout() >30) {
             builder.keepAliveTimeout(cfg.getKeepAliveTimeout(), TimeUnit.SECONDS);
         }
@@ -136,21 +487,278 @@ public class Server {
     }
 
     /**
-     * shutdown when application shutdown
+     * shutdown when application shutdown, the dispatch executors / event loops are shutdown after the server terminated
      */
     public void shutdown() {
         Optional.ofNullable(server).ifPresent(io.grpc.Server::shutdown);
+        if (server == null || (executors.isEmpty() && eventLoops.isEmpty())) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                server.awaitTermination();
+            } catch (InterruptedException ignore) {
+            }
+            executors.values().forEach(DispatchExecutor::shutdown);
+            eventLoops.forEach(EventLoopGroup::shutdownGracefully);
+        }, "jackstaff-dispatch-shutdown");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * the adaptive concurrency limit of UNARY calls
+     * @return null if ServerConfig's limit is NONE
+     */
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * the queue depth / active threads of the executors, for sizing the pools
+     * @return Dispatcher to its executor
+     */
+    public Map<Dispatcher, DispatchExecutor> getDispatchExecutors() {
+        return Collections.unmodifiableMap(executors);
     }
 
-    private ServerServiceDefinition bindService(BindableService service){
+    /**
+     * the in-flight / queued / rejected calls of the bulkheads
+     * @return service (type name) or method (type name/method name) to its bulkhead
+     */
+    public Map<String, Bulkhead> getBulkheads() {
+        return Stream.concat(serviceBulkheads.values().stream(), methodBulkheads.values().stream()).
+                collect(Collectors.toMap(Bulkhead::getName, b -> b, (a, b) -> a, TreeMap::new));
+    }
 
-        return ServerInterceptors.intercept(service, new ServerInterceptor(){
+    /**
+     * the responses' compression ratio / time, for tuning the min size
+     * @return name (protocol/method) to its compression
+     */
+    public Map<String, Compression> getCompressions() {
+        return compressions.values().stream().filter(Optional::isPresent).map(Optional::get).
+                collect(Collectors.toMap(Compression::getName, c -> c, (a, b) -> a, TreeMap::new));
+    }
+
+    private Compression compression(ServerConfig cfg, MethodDescriptor descriptor) {
+        return compressions.computeIfAbsent(descriptor.getSign(), key -> Optional.ofNullable(Compression.of(
+                descriptor.getType().getName() + "/" + descriptor.getMethod().getName(), descriptor,
+                cfg.getCompression(), cfg.getCompressionMinSize()))).orElse(null);
+    }
+
+    private static MaxConcurrency maxConcurrency(Object bean, Method method) {
+        MaxConcurrency limit = method.getAnnotation(MaxConcurrency.class);
+        if (limit != null) {
+            return limit;
+        }
+        try {
+            return bean.getClass().getMethod(method.getName(), method.getParameterTypes()).getAnnotation(MaxConcurrency.class);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private List<Bulkhead> bulkheads(MethodDescriptor descriptor) {
+        Bulkhead service = serviceBulkheads.get(descriptor.getType());
+        Bulkhead method = methodBulkheads.get(descriptor.getMethod());
+        if (service == null && method == null) {
+            return Collections.emptyList();
+        }
+        return Stream.of(service, method).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private DispatchExecutor executor(ServerConfig cfg, Dispatcher dispatcher) {
+        return executors.computeIfAbsent(Optional.ofNullable(dispatcher).orElse(Dispatcher.DEFAULT),
+                d -> new DispatchExecutor(d.name().toLowerCase(), d, cfg.getDispatchThreads()));
+    }
+
+    /**
+     * the bean's own executor, null if it's same as the server's.
+     * DIRECT can't go back to the transport thread, it runs on the server's executor.
+     */
+    private DispatchExecutor dispatch(ServerConfig cfg, Class<?> type) {
+        Dispatcher dispatcher = dispatchers.get(type);
+        if (dispatcher == null || dispatcher == cfg.getDispatcher()) {
+            return null;
+        }
+        return executor(cfg, dispatcher);
+    }
+
+    /**
+     * a bean can NOT go back to the transport thread (DIRECT), its calls are already on the server's executor
+     */
+    private void validateDispatchers(ServerConfig cfg) {
+        if (cfg.getDispatcher() == Dispatcher.INHERIT) {
+            throw new ValidationException("server dispatcher INHERIT is for the beans only");
+        }
+        dispatchers.forEach((type, dispatcher) -> {
+            if (dispatcher == Dispatcher.DIRECT && cfg.getDispatcher() != Dispatcher.DIRECT) {
+                throw new ValidationException(type.getName() + " dispatcher DIRECT needs the server dispatcher DIRECT, but " + cfg.getDispatcher());
+            }
+        });
+    }
+
+    /**
+     * the Packet codecs accepted from the calls' header, the built-in ones by default
+     */
+    private static Set<String> codecs(ServerConfig cfg) {
+        if (cfg.getCodecs() == null || cfg.getCodecs().isEmpty()) {
+            return new HashSet<>(Arrays.asList(PacketCodec.PROTOSTUFF, PacketCodec.GRAPH));
+        }
+        Set<String> codecs = new HashSet<>();
+        for (String codec : cfg.getCodecs()) {
+            if (Transforms.getPacketTransform(codec) == null) {
+                throw new ValidationException("codec " + codec + " NOT found");
+            }
+            codecs.add(codec);
+        }
+        return codecs;
+    }
+
+    private static <ReqT, RespT> ServerCall.Listener<ReqT> startCall(DispatchExecutor executor, ServerCall<ReqT, RespT> call,
+                                                                     Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (executor == null) {
+            return next.startCall(call, headers);
+        }
+        return new DispatchListener<>(executor.serial(), call, headers, next);
+    }
+
+    /**
+     * shed the UNARY call at once when the adaptive limit is reached, sample its RTT when it's closed OK
+     */
+    private static <ReqT, RespT> ServerCall.Listener<ReqT> limit(AdaptiveLimiter limiter, ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 BiFunction<ServerCall<ReqT, RespT>, Metadata, ServerCall.Listener<ReqT>> next) {
+        if (limiter == null || call.getMethodDescriptor().getType() != io.grpc.MethodDescriptor.MethodType.UNARY) {
+            return next.apply(call, headers);
+        }
+        long start = limiter.acquire();
+        if (start < 0) {
+            call.close(io.grpc.Status.UNAVAILABLE.withDescription("server overloaded, limit " + limiter.getLimit()), new Metadata());
+            return new ServerCall.Listener<ReqT>() {};
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        ServerCall<ReqT, RespT> limited = new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+            @Override
+            public void close(io.grpc.Status status, Metadata trailers) {
+                try {
+                    super.close(status, trailers);
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        limiter.release(start, status.isOk());
+                    }
+                }
+            }
+        };
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.apply(limited, headers);
+        } catch (RuntimeException ex) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(start, false);
+            }
+            throw ex;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onCancel() {
+                if (released.compareAndSet(false, true)) {
+                    limiter.release(start, false);
+                }
+                super.onCancel();
+            }
+        };
+    }
+
+    /**
+     * admit a call of the batch stream like a single UNARY one: by the adaptive limit, then the bulkheads,
+     * and run it on the bean's executor. the permits are released once when it's done.
+     */
+    private void admit(ServerConfig cfg, DispatchExecutor executor, MethodDescriptor descriptor,
+                       Consumer<Consumer<Boolean>> run, Consumer<String> reject) {
+        AdaptiveLimiter limiter = this.limiter;
+        long start = limiter != null ? limiter.acquire() : 0;
+        if (start < 0) {
+            reject.accept("server overloaded, limit " + limiter.getLimit());
+            return;
+        }
+        Admission admission = new Admission(bulkheads(descriptor), executor.getDispatcher() == Dispatcher.DIRECT ? Trampoline.INSTANCE : executor);
+        AtomicBoolean released = new AtomicBoolean();
+        Consumer<Boolean> done = ok -> {
+            if (released.compareAndSet(false, true)) {
+                admission.release();
+                if (limiter != null) {
+                    limiter.release(start, ok);
+                }
+            }
+        };
+        admission.admit(io.grpc.Context.current().wrap(() -> {
+            try {
+                executor.execute(io.grpc.Context.current().wrap(() -> run.accept(done)));
+            } catch (RejectedExecutionException ex) {
+                done.accept(false);
+                reject.accept("batch call rejected");
+            }
+        }), bulkhead -> {
+            done.accept(false);
+            reject.accept("bulkhead " + bulkhead.getName() + " is full");
+        });
+    }
+
+    /**
+     * the outermost interceptor shed the overload, resolve the call's method, admit it by the bulkheads,
+     * then dispatch it to the bean's executor
+     */
+    private ServerServiceDefinition bindService(ServerConfig cfg, BindableService service,
+                                                BiFunction<io.grpc.MethodDescriptor<?, ?>, Metadata, MethodDescriptor> resolver){
+        ServerServiceDefinition definition = ServerInterceptors.intercept(service, new ServerInterceptor(){
             @Override
             public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
                                                                          final Metadata headers, ServerCallHandler<ReqT, RespT> next) {
                 return Contexts.interceptCall(HeaderMetadata.ROOT.capture(call.getAuthority(), call.getAttributes(), headers), call, headers, next);
             }
         });
+        return ServerInterceptors.intercept(definition, new ServerInterceptor(){
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                         final Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                return limit(limiter, call, headers, (limited, h) -> admit(limited, h, next));
+            }
+
+            private <ReqT, RespT> ServerCall.Listener<ReqT> admit(ServerCall<ReqT, RespT> call,
+                                                                  final Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                MethodDescriptor descriptor = resolver.apply(call.getMethodDescriptor(), headers);
+                if (descriptor == null) {
+                    return next.startCall(call, headers);
+                }
+                Compression compression = compression(cfg, descriptor);
+                if (compression != null) {
+                    call = compression.compress(call);
+                }
+                DispatchExecutor executor = dispatch(cfg, descriptor.getType());
+                List<Bulkhead> bulkheads = bulkheads(descriptor);
+                if (bulkheads.isEmpty()) {
+                    return startCall(executor, call, headers, next);
+                }
+                DispatchExecutor admitter = executor != null ? executor : executor(cfg, cfg.getDispatcher());
+                Admission admission = new Admission(bulkheads, admitter.getDispatcher() == Dispatcher.DIRECT ? Trampoline.INSTANCE : admitter);
+                ServerCall<ReqT, RespT> admitted = new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+                    @Override
+                    public void close(io.grpc.Status status, Metadata trailers) {
+                        try {
+                            super.close(status, trailers);
+                        } finally {
+                            admission.release();
+                        }
+                    }
+                };
+                GateListener<ReqT> gate = new GateListener<>(admission::release);
+                admission.admit(io.grpc.Context.current().wrap(() -> gate.start(startCall(executor, admitted, headers, next))), bulkhead -> {
+                    admitted.close(io.grpc.Status.RESOURCE_EXHAUSTED.withDescription("bulkhead " + bulkhead.getName() + " is full"), new Metadata());
+                    gate.start(new ServerCall.Listener<ReqT>() {});
+                });
+                return gate;
+            }
+        });
     }
 
 }
@@ -52,6 +52,15 @@ class ServerBinder<T> implements BindableService {
         return serviceDescriptor.getName();
     }
 
+    public Class<T> getType() {
+        return type;
+    }
+
+    MethodDescriptor getMethod(String fullMethodName) {
+        String name = fullMethodName.substring(fullMethodName.lastIndexOf("/")+1);
+        return name.isEmpty() ? null : descriptors.get(name.substring(0,1).toLowerCase()+ name.substring(1));
+    }
+
     @SuppressWarnings("unchecked,rawtypes")
     public ServerServiceDefinition bindService() {
         ServerServiceDefinition.Builder builder =ServerServiceDefinition.builder(serviceDescriptor);
@@ -105,6 +114,17 @@ class ServerBinder<T> implements BindableService {
                             observer.onError(Utils.throwable((Exception) result.getPayload()));
                             return;
                         }
+                        if (descriptor.isFuture()) {
+                            Utils.whenComplete(result, (value, ex) -> {
+                                if (ex != null) {
+                                    observer.onError(Utils.throwable(ex));
+                                    return;
+                                }
+                                Optional.ofNullable(value).map(respTransform::build).ifPresent(observer::onNext);
+                                observer.onCompleted();
+                            });
+                            return;
+                        }
                         Optional.ofNullable(result.getPayload()).map(respTransform::build).ifPresent(observer::onNext);
                         observer.onCompleted();
                     }catch (Throwable ex){
@@ -119,6 +139,10 @@ class ServerBinder<T> implements BindableService {
                         Packet<?> result = Utils.walkThrough(context, descriptor.getInterceptors());
                         if (result.isException()) {
                             respStream.error(Utils.throwable((Exception) result.getPayload()));
+                            return;
+                        }
+                        if (descriptor.isReactive()) {
+                            Reactive.reply(context, result.getPayload(), observer, respTransform.fromObserver(observer));
                         }
                     }catch (Throwable ex){
                         respStream.error(Utils.throwable(ex));
@@ -138,7 +162,12 @@ class ServerBinder<T> implements BindableService {
                             respStream.unary();
                         }
                         Context context = new Context(descriptor, new Object[]{respStream}, descriptor.getBean());
+                        Reactive.Inbound<Object> requests = descriptor.isReactive() ? Reactive.requests(context, observer) : null;
                         Packet<?> result = Utils.walkThrough(context, descriptor.getInterceptors());
+                        if (!result.isException() && requests != null) {
+                            Reactive.reply(context, result.getPayload(), observer, respTransform.fromObserver(observer));
+                            return reqTransform.buildObserver((StreamObserver<Object>) (StreamObserver<?>) requests);
+                        }
                         if (!result.isException()) {
                             MessageStream<Object> reqStream = MessageStream.build((Consumer<Object>)result.getPayload()).link(respStream);
                             return reqTransform.buildObserver(reqStream.toStreamObserver());
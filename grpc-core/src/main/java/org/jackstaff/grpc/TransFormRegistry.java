@@ -94,6 +94,15 @@ public class TransFormRegistry<Pojo, Proto, Builder> {
                 (pojo, builder)->builderSet.accept(builder, ByteString.copyFrom(pojoGet.apply(pojo))));
     }
 
+    /**
+     * bytes without copy, the pojo side own the ByteString
+     */
+    public void byteString(Predicate<Pojo> pojoHas, Function<Pojo, ByteString> pojoGet, BiConsumer<Pojo, ByteString> pojoSet,
+                           Function<Proto, ByteString> protoGet, BiConsumer<Builder, ByteString> builderSet) {
+        mapping(pojoHas, (pojo, proto)->pojoSet.accept(pojo, protoGet.apply(proto)),
+                (pojo, builder)->builderSet.accept(builder, pojoGet.apply(pojo)));
+    }
+
     public void doubleValue(Predicate<Pojo> pojoHas, Function<Pojo, Double> pojoGet, BiConsumer<Pojo, Double> pojoSet,
                                                   Predicate<Proto> protoHas, Function<Proto, DoubleValue> protoGet, BiConsumer<Builder, DoubleValue> builderSet){
         value(PropertyKind.DOUBLE_VALUE, pojoHas, pojoGet, pojoSet, protoHas, protoGet, builderSet);
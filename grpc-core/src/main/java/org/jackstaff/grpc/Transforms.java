@@ -19,12 +19,15 @@ package org.jackstaff.grpc;
 import com.google.protobuf.*;
 import io.grpc.ServiceDescriptor;
 import io.grpc.stub.StreamObserver;
+import org.jackstaff.grpc.exception.ValidationException;
+import org.jackstaff.grpc.internal.InternalProto;
 import org.jackstaff.grpc.internal.Serializer;
 
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
@@ -35,6 +38,8 @@ class Transforms {
 
     private static final Map<Class<?>, ServiceDescriptor> descriptors = new ConcurrentHashMap<>();
     private static final Map<Class<?>, Transform<?,?>> transforms = new ConcurrentHashMap<>();
+    private static final Map<String, Transform<?,?>> packetTransforms = new ConcurrentHashMap<>();
+    private static volatile boolean packetCodecs;
 
     static {
         addProtoTransform(Double.class, DoubleValue.class, DoubleValue::getValue, v->DoubleValue.newBuilder().setValue(v).build());
@@ -90,10 +95,49 @@ class Transforms {
     }
 
     static Transform<?, ?> getPacketTransform(){
+        if (!packetCodecs){
+            loadPacketCodecs();
+        }
+        return transforms.get(Packet.class);
+    }
+
+    /**
+     * once, the default transform and the built-in / ServiceLoader codecs are all there before it's published,
+     * the codecs registered by PacketCodec.register are kept
+     */
+    private static synchronized void loadPacketCodecs(){
+        if (packetCodecs){
+            return;
+        }
         if (!hasTransform(Packet.class)){
             Serializer.registerPacketTransForm();
         }
-        return transforms.get(Packet.class);
+        for (PacketCodec codec : ServiceLoader.load(PacketCodec.class)) {
+            if (!packetTransforms.containsKey(codec.name())) {
+                addPacketCodec(codec);
+            }
+        }
+        packetCodecs = true;
+    }
+
+    /**
+     * @param codec the codec name, null or empty is the default (protostuff)
+     * @return the Packet transform of the codec, null if NOT found
+     */
+    static Transform<?, ?> getPacketTransform(String codec){
+        Transform<?, ?> transform = getPacketTransform();
+        if (codec == null || codec.isEmpty() || PacketCodec.PROTOSTUFF.equals(codec)){
+            return transform;
+        }
+        return packetTransforms.get(codec);
+    }
+
+    static void addPacketCodec(PacketCodec codec){
+        if (PacketCodec.PROTOSTUFF.equals(codec.name())){
+            throw new ValidationException("codec " + codec.name() + " is the default, can't be replaced");
+        }
+        packetTransforms.put(codec.name(), new TransformWrapper<>(Packet.class, InternalProto.Packet.class, proto -> codec.decode(proto.getData()),
+                packet -> InternalProto.Packet.newBuilder().setData(codec.encode(packet)).build()));
     }
 
     @SuppressWarnings("unchecked")
@@ -23,6 +23,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
 
 /**
  * @author reco@jackstaff.org
@@ -78,12 +81,20 @@ class Utils {
     static Packet<?> walkThrough(Context context, List<Interceptor> interceptors) {
         Packet<?> packet = before(context, interceptors);
         if (!packet.isException()){
-            packet = invoke(context.getTarget(), context.getMethod(), context.getArguments());
+            packet = invoke(context.getTarget(), context.getMethod(), context.arguments());
             after(context, interceptors, packet);
         }
         return packet;
     }
 
+    /**
+     * the result of UNARY method which return future, the action run when it's completed
+     */
+    static void whenComplete(Packet<?> result, BiConsumer<Object, Throwable> action) {
+        ((CompletionStage<?>) result.getPayload()).whenComplete((value, ex) ->
+                action.accept(value, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex));
+    }
+
     static Throwable throwable(Throwable ex){
         if (ex instanceof io.grpc.StatusException){
             return Status.fromThrowable(ex).asException(((io.grpc.StatusException) ex).getTrailers());
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * micro batching of a (v1, NOT @Protocol) UNARY protocol method at client side:
+ * the concurrent calls are collected for "window" milliseconds or till "size" calls,
+ * and sent as one message over a long-lived stream, the server admit each call like a single one (the bulkheads, the adaptive limit),
+ * run it on the bean's executor and answer it when it's done, RESOURCE_EXHAUSTED if it's NOT admitted.
+ * each call still walk through the client interceptors, but the headers set in Context are NOT sent.
+ * @author reco@jackstaff.org
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Batch {
+
+    /**
+     * @return max wait, in milliseconds, since the first call of the batch
+     */
+    int window() default 2;
+
+    /**
+     * @return max calls per batch
+     */
+    int size() default 64;
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.annotation;
+
+import org.jackstaff.grpc.Status;
+
+import java.lang.annotation.*;
+
+/**
+ * the client side circuit breaker of the UNARY / BLOCKING_SERVER_STREAMING protocol methods, per authority and method.
+ * on the protocol interface (all such methods) or its method (override the interface's).
+ * it opens when the failure (the status in "failureCodes", default: UNAVAILABLE, DEADLINE_EXCEEDED, RESOURCE_EXHAUSTED) rate
+ * or the slow call rate of the last "window" calls reach the threshold, the calls fail fast with UNAVAILABLE while it's open,
+ * after "openTime" it's half open, "probes" calls are let through, all succeed: closed, any fail: open again.
+ * @author reco@jackstaff.org
+ * @see org.jackstaff.grpc.Circuit
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface CircuitBreaker {
+
+    /**
+     * @return the failure rate threshold, in percent
+     */
+    int failureRate() default 50;
+
+    /**
+     * @return the status codes count as failure, the others (like UNKNOWN / INTERNAL of the application's exceptions) are success
+     */
+    int[] failureCodes() default {Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED};
+
+    /**
+     * @return the slow call rate threshold, in percent, 1 to 99: open when the slow calls reach it,
+     *         100 (default): never open by slow calls, even if all of them are slow (a slow probe doesn't reopen it either)
+     */
+    int slowCallRate() default 100;
+
+    /**
+     * @return the duration of a slow call, in milliseconds
+     */
+    long slowCall() default 1000;
+
+    /**
+     * @return the sliding window, in calls
+     */
+    int window() default 100;
+
+    /**
+     * @return min calls in the window before the rates are evaluated
+     */
+    int minCalls() default 20;
+
+    /**
+     * @return how long it stays open before half open, in milliseconds
+     */
+    long openTime() default 5000;
+
+    /**
+     * @return the probe calls of half open
+     */
+    int probes() default 5;
+
+}
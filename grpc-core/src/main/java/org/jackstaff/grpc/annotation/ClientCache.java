@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * cache the response of an idempotent UNARY protocol method at client side,
+ * keyed by the encoded request, a hit does NOT walk through the interceptors.
+ * <pre>{@code
+ *     @ClientCache(ttl = 30)
+ *     Customer findCustomer(long id);
+ * }</pre>
+ * @author reco@jackstaff.org
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ClientCache {
+
+    /**
+     * @return time to live, in seconds
+     */
+    int ttl() default 60;
+
+    /**
+     * @return max bytes of the encoded request + response of all entries
+     */
+    long maxBytes() default 8 * 1024 * 1024;
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * the message compression of the protocol methods, on the protocol interface (all methods) or its method (override the interface's),
+ * override the client's / server's config. the client compress the requests, the server compress the responses
+ * (only if the client accept the encoding), the messages smaller than "minSize" are sent raw.
+ * @author reco@jackstaff.org
+ * @see org.jackstaff.grpc.Compression
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Compress {
+
+    /**
+     * @return the message encoding: gzip, or a registered one (Compression.register), "identity": NOT compress
+     */
+    String value() default "gzip";
+
+    /**
+     * @return the min message size to compress, in bytes
+     */
+    int minSize() default 1024;
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * let grpc-generator generate the ProtocolProxy (type + "Proxy") of a hand-written protocol interface (v1, or @Protocol),
+ * like it does for the interfaces generated from .proto. a top level, non generic interface only.
+ * @author reco@jackstaff.org
+ * @see org.jackstaff.grpc.ProtocolProxy
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface GenerateProxy {
+
+}
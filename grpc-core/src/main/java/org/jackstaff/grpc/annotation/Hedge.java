@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.annotation;
+
+import org.jackstaff.grpc.Status;
+
+import java.lang.annotation.*;
+
+/**
+ * hedged requests of an idempotent UNARY protocol method at client side:
+ * if no response arrives within "delay" (or the "percentile" of the recent latency), send a duplicate call,
+ * preferring another endpoint, the first response wins and the others are cancelled.
+ * at most "maxRate" percent of the calls are hedged, so hedging can NOT amplify an overload.
+ * @author reco@jackstaff.org
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Hedge {
+
+    /**
+     * @return the delay of the hedged call, in milliseconds, 0: the "percentile" of the recent latency
+     */
+    long delay() default 0;
+
+    /**
+     * @return the percentile of the recent latency as the delay, when "delay" is 0
+     */
+    double percentile() default 95;
+
+    /**
+     * @return max calls include the first one, each hedged call is sent one "delay" after the previous
+     */
+    int maxAttempts() default 2;
+
+    /**
+     * @return max hedged calls, in percent of the calls
+     */
+    double maxRate() default 10;
+
+    /**
+     * @return the status codes an attempt may fail with while the other attempts go on (gRPC's non fatal codes),
+     * any other error of an attempt completes the call at once
+     * @see Status.Code
+     */
+    int[] codes() default {Status.Code.UNAVAILABLE};
+
+}
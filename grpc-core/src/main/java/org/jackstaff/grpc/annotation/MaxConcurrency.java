@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * server side bulkhead, on the implementation class (per service) or its / protocol interface's method (per method).
+ * the calls over "value" in-flight wait in a queue of "queue" size,
+ * the others are rejected immediately with RESOURCE_EXHAUSTED.
+ * <pre>{@code
+ *     @MaxConcurrency(value = 32, queue = 64)
+ *     public Customer findCustomer(long id) {...}
+ * }</pre>
+ * @author reco@jackstaff.org
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface MaxConcurrency {
+
+    /**
+     * @return max in-flight calls
+     */
+    int value();
+
+    /**
+     * @return max calls wait for the in-flight ones, 0: reject at once
+     */
+    int queue() default 0;
+
+}
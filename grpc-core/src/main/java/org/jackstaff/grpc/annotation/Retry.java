@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.annotation;
+
+import org.jackstaff.grpc.Status;
+
+import java.lang.annotation.*;
+
+/**
+ * the retry policy of a @Protocol (v2) method at client side, it's applied as gRPC service config of the channels.
+ * the backoff of the n-th retry is random(0, min(initialBackoff * multiplier^(n-1), maxBackoff)), the jitter is gRPC's.
+ * the retry budget is the client config's "retryTokenRatio".
+ * <pre>{@code
+ *     @Retry(codes = {Status.Code.UNAVAILABLE, Status.Code.ABORTED}, maxAttempts = 4)
+ *     Customer findCustomer(long id);
+ * }</pre>
+ * @author reco@jackstaff.org
+ * @see org.jackstaff.grpc.configuration.RetryConfig
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Retry {
+
+    /**
+     * @return max attempts include the first one, gRPC cap it to 5
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * @return the retryable status codes, gRPC's (0..16) only
+     * @see Status.Code
+     */
+    int[] codes() default {Status.Code.UNAVAILABLE};
+
+    /**
+     * @return the initial backoff, in milliseconds
+     */
+    long initialBackoff() default 100;
+
+    /**
+     * @return the max backoff, in milliseconds
+     */
+    long maxBackoff() default 1000;
+
+    /**
+     * @return the backoff multiplier
+     */
+    double multiplier() default 2;
+
+}
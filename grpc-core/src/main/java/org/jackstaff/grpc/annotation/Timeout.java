@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.annotation;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the deadline of the protocol method at client side, override the client config's default timeout.
+ * the per call timeout (Context.setTimeout in interceptor, or MessageStream's timeout) override it.
+ * <pre>{@code
+ *     @Timeout(50)
+ *     Customer findCustomer(long id);
+ * }</pre>
+ * @author reco@jackstaff.org
+ */
+
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Timeout {
+
+    /**
+     * @return the timeout, MUST be positive
+     */
+    long value();
+
+    /**
+     * @return default MILLISECONDS
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+}
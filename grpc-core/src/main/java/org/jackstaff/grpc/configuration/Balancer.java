@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.configuration;
+
+/**
+ * how the client place a call on the channels of the authority's endpoints.
+ * score = (in-flight calls + 1) * EWMA of the endpoint's observed latency (the failures with a penalty),
+ * the EWMA decays to the average of the endpoints when NOT observed, an endpoint never observed has the average.
+ * streaming calls compare the open streams of the channels first,
+ * unary calls take a channel without streams of the chosen endpoint if there's one (channels > 1).
+ *
+ * @author reco@jackstaff.org
+ * @see ClientConfig#getEndpoints()
+ */
+public enum Balancer {
+
+    /**
+     * each channel in turn, ignore the score
+     */
+    ROUND_ROBIN,
+
+    /**
+     * the channel with the lowest score
+     */
+    LEAST_REQUEST,
+
+    /**
+     * the lower score of two random channels
+     */
+    POWER_OF_TWO_CHOICES;
+
+}
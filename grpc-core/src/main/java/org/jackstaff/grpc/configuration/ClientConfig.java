@@ -16,6 +16,8 @@
 
 package org.jackstaff.grpc.configuration;
 
+import java.util.List;
+
 /**
  * time unit: second
  *
@@ -33,6 +35,21 @@ public class ClientConfig {
     private int idleTimeout;
     private boolean plaintext=true;
     private int defaultTimeout;
+    private int defaultTimeoutMillis;
+    private int channels=1;
+    private List<String> endpoints;
+    private Balancer balancer=Balancer.LEAST_REQUEST;
+    private Transport transport=Transport.DEFAULT;
+    private int eventLoopThreads;
+    private boolean shareEventLoop=true;
+    private int flowControlWindow;
+    private List<RetryConfig> retryPolicies;
+    private double retryTokenRatio;
+    private int retryMaxTokens=10;
+    private boolean typedPacking;
+    private String codec;
+    private String compression;
+    private int compressionMinSize=1024;
 
     public ClientConfig() {
     }
@@ -122,4 +139,178 @@ public class ClientConfig {
         this.defaultTimeout = defaultTimeout;
     }
 
+    public int getDefaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * @param defaultTimeoutMillis the default timeout in milliseconds, override "defaultTimeout"(seconds) if positive
+     */
+    public void setDefaultTimeoutMillis(int defaultTimeoutMillis) {
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * channels(connections) per endpoint, each call is placed on the channel with the fewest in-flight calls,
+     * a unary call prefer the channels without long-lived streams
+     * @param channels default 1
+     */
+    public void setChannels(int channels) {
+        this.channels = channels;
+    }
+
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * the servers of the authority, host/port is ignored when it's NOT empty
+     * @param endpoints list of "host:port"
+     */
+    public void setEndpoints(List<String> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public Balancer getBalancer() {
+        return balancer;
+    }
+
+    /**
+     * @param balancer default LEAST_REQUEST
+     */
+    public void setBalancer(Balancer balancer) {
+        this.balancer = balancer;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @param transport default DEFAULT(gRPC's)
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * @param eventLoopThreads the io event loop threads (NIO/EPOLL), default(0) cpu * 2
+     */
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    public boolean isShareEventLoop() {
+        return shareEventLoop;
+    }
+
+    /**
+     * @param shareEventLoop true: share the event loop (NIO/EPOLL) with the other clients, false: the client's own
+     */
+    public void setShareEventLoop(boolean shareEventLoop) {
+        this.shareEventLoop = shareEventLoop;
+    }
+
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    /**
+     * @param flowControlWindow the initial HTTP/2 flow control window(bytes), default(0) gRPC's 1M
+     */
+    public void setFlowControlWindow(int flowControlWindow) {
+        this.flowControlWindow = flowControlWindow;
+    }
+
+    public List<RetryConfig> getRetryPolicies() {
+        return retryPolicies;
+    }
+
+    /**
+     * @param retryPolicies the retry policies of the services/methods, with the @Retry of the protocols
+     */
+    public void setRetryPolicies(List<RetryConfig> retryPolicies) {
+        this.retryPolicies = retryPolicies;
+    }
+
+    public double getRetryTokenRatio() {
+        return retryTokenRatio;
+    }
+
+    /**
+     * @param retryTokenRatio the retry budget: each successful call earn the ratio token, each failure cost 1 token,
+     *                        retry stops when the tokens is under half of "retryMaxTokens". default(0) unlimited
+     */
+    public void setRetryTokenRatio(double retryTokenRatio) {
+        this.retryTokenRatio = retryTokenRatio;
+    }
+
+    public int getRetryMaxTokens() {
+        return retryMaxTokens;
+    }
+
+    /**
+     * @param retryMaxTokens the max tokens of the retry budget, default 10, gRPC's bound: (0, 1000]
+     */
+    public void setRetryMaxTokens(int retryMaxTokens) {
+        this.retryMaxTokens = retryMaxTokens;
+    }
+
+    /**
+     * pack the (v1) request arguments by the method's typed schema (positional, no type tags),
+     * the server should be the version support it.
+     * @return true if typed
+     */
+    public boolean isTypedPacking() {
+        return typedPacking;
+    }
+
+    public void setTypedPacking(boolean typedPacking) {
+        this.typedPacking = typedPacking;
+    }
+
+    /**
+     * the (v1) Packet codec: protostuff (default), graph, or a registered PacketCodec, the server should have it.
+     * @return the codec name
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * @param compression the message encoding of the requests: gzip, or a registered one (Compression.register),
+     *                    default(null) NOT compressed, the methods' @Compress override it
+     */
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    /**
+     * @param compressionMinSize the min message size(bytes) to compress, default 1024
+     */
+    public void setCompressionMinSize(int compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.configuration;
+
+/**
+ * which executor the server run the handlers (and interceptors) on
+ *
+ * @author reco@jackstaff.org
+ * @see ServerConfig#getDispatcher()
+ */
+public enum Dispatcher {
+
+    /**
+     * cached thread pool, like gRPC's default
+     */
+    DEFAULT,
+
+    /**
+     * the transport(netty event loop) thread, for the non-blocking handlers ONLY
+     */
+    DIRECT,
+
+    /**
+     * fixed thread pool, "dispatchThreads" threads
+     */
+    FIXED,
+
+    /**
+     * ForkJoinPool in async mode, "dispatchThreads" parallelism
+     */
+    FORK_JOIN,
+
+    /**
+     * a virtual thread per task, the JVM MUST support it (java 21+)
+     */
+    VIRTUAL,
+
+    /**
+     * the server config's dispatcher, for a bean only (the default of @Server's "dispatcher"), NOT for the server config
+     */
+    INHERIT;
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.configuration;
+
+/**
+ * the adaptive concurrency limit algorithm of the server's UNARY calls
+ *
+ * @author reco@jackstaff.org
+ * @see ServerConfig#getLimit()
+ */
+public enum Limit {
+
+    /**
+     * no adaptive limit
+     */
+    NONE,
+
+    /**
+     * TCP Vegas style: estimate the queue by limit * (1 - minRtt / rtt), grow while it's short, shrink while it's long
+     */
+    VEGAS,
+
+    /**
+     * gradient style: limit = limit * (minRtt / rtt) + sqrt(limit), smoothed
+     */
+    GRADIENT;
+
+}
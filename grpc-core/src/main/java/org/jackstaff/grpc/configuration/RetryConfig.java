@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.configuration;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the retry policy of a gRPC service or method, by client config, like @Retry
+ * time unit: millisecond
+ * @author reco@jackstaff.org
+ * @see org.jackstaff.grpc.annotation.Retry
+ */
+public class RetryConfig {
+
+    private String name;
+    private int maxAttempts = 3;
+    private List<String> retryableStatusCodes = Collections.singletonList("UNAVAILABLE");
+    private long initialBackoff = 100;
+    private long maxBackoff = 1000;
+    private double backoffMultiplier = 2;
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name the full gRPC service name, or service/method, like "helloworld.Greeter/SayHello"
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts include the first one, default 3, gRPC cap it to 5
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public List<String> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    /**
+     * @param retryableStatusCodes the gRPC status code names, default [UNAVAILABLE]
+     */
+    public void setRetryableStatusCodes(List<String> retryableStatusCodes) {
+        this.retryableStatusCodes = retryableStatusCodes;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package org.jackstaff.grpc.configuration;
 
+import java.util.List;
+
 /**
  * @author reco@jackstaff.org
  */
@@ -33,6 +35,19 @@ public class ServerConfig {
     private int maxConnectionAgeGrace;
     private String kyeCertChain;
     private String privateKey;
+    private Dispatcher dispatcher = Dispatcher.DEFAULT;
+    private int dispatchThreads;
+    private Limit limit = Limit.NONE;
+    private int maxLimit = 1000;
+    private Transport transport = Transport.DEFAULT;
+    private int bossThreads = 1;
+    private int workerThreads;
+    private boolean reusePort;
+    private int flowControlWindow;
+    private int maxConcurrentCallsPerConnection;
+    private String compression;
+    private int compressionMinSize = 1024;
+    private List<String> codecs;
 
     public ServerConfig() {
     }
@@ -137,4 +152,150 @@ public class ServerConfig {
         this.privateKey = privateKey;
     }
 
+    public Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @param dispatcher default DEFAULT, NOT INHERIT
+     */
+    public void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    /**
+     * @param dispatchThreads threads of FIXED/FORK_JOIN, default(0) cpu * 2
+     */
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit the adaptive concurrency limit of UNARY calls, default NONE
+     */
+    public void setLimit(Limit limit) {
+        this.limit = limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @param maxLimit the upper bound of the adaptive limit, default 1000
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @param transport default DEFAULT(gRPC's)
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public int getBossThreads() {
+        return bossThreads;
+    }
+
+    /**
+     * @param bossThreads the accept event loop threads (NIO/EPOLL), default 1
+     */
+    public void setBossThreads(int bossThreads) {
+        this.bossThreads = bossThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * @param workerThreads the io event loop threads (NIO/EPOLL), default(0) cpu * 2
+     */
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * @param reusePort SO_REUSEPORT, EPOLL only (the server fails to start on NIO), several servers(processes) can bind the same port
+     */
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    /**
+     * @param flowControlWindow the initial HTTP/2 flow control window(bytes), default(0) gRPC's 1M
+     */
+    public void setFlowControlWindow(int flowControlWindow) {
+        this.flowControlWindow = flowControlWindow;
+    }
+
+    public int getMaxConcurrentCallsPerConnection() {
+        return maxConcurrentCallsPerConnection;
+    }
+
+    /**
+     * @param maxConcurrentCallsPerConnection HTTP/2 max concurrent streams per connection, default(0) unlimited
+     */
+    public void setMaxConcurrentCallsPerConnection(int maxConcurrentCallsPerConnection) {
+        this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+    }
+
+
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * @param compression the message encoding of the responses: gzip, or a registered one (Compression.register),
+     *                    default(null) NOT compressed, the methods' @Compress override it
+     */
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    /**
+     * @param compressionMinSize the min message size(bytes) to compress, default 1024
+     */
+    public void setCompressionMinSize(int compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public List<String> getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * @param codecs the Packet codecs the (v1) calls may use, default(empty) the built-in protostuff and graph,
+     *               the others (e.g. kryo) must be listed, a call with any other codec get UNIMPLEMENTED
+     */
+    public void setCodecs(List<String> codecs) {
+        this.codecs = codecs;
+    }
+
 }
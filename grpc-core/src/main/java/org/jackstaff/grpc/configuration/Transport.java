@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.configuration;
+
+/**
+ * the netty transport of server / client channels
+ *
+ * @author reco@jackstaff.org
+ * @see ServerConfig#getTransport()
+ * @see ClientConfig#getTransport()
+ */
+public enum Transport {
+
+    /**
+     * gRPC's default, the shared event loops
+     */
+    DEFAULT,
+
+    /**
+     * java NIO
+     */
+    NIO,
+
+    /**
+     * native epoll (linux), fall back to NIO if it's NOT available
+     */
+    EPOLL;
+
+}
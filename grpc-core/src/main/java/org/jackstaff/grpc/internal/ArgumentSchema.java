@@ -0,0 +1,276 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.internal;
+
+import com.google.protobuf.ByteString;
+import io.protostuff.Input;
+import io.protostuff.Output;
+import io.protostuff.Schema;
+import io.protostuff.runtime.DefaultIdStrategy;
+import io.protostuff.runtime.IdStrategy;
+import io.protostuff.runtime.RuntimeSchema;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Consumer;
+
+/**
+ * the typed schema of a (v1) method's arguments, derived from the parameter types:
+ * argument i is field i+1 of its declared type, no type tags, null and the Consumer are absent.
+ * a POJO argument should be final, a subclass instance would lose its own fields,
+ * the non-final POJOs nested in it keep their type, as the default packing.
+ * @author reco@jackstaff.org
+ */
+public final class ArgumentSchema implements Schema<Object[]> {
+
+    private static final IdStrategy STRATEGY = new DefaultIdStrategy(
+            IdStrategy.DEFAULT_FLAGS | IdStrategy.ALLOW_NULL_ARRAY_ELEMENT |
+                    IdStrategy.MORPH_NON_FINAL_POJOS | IdStrategy.COLLECTION_SCHEMA_ON_REPEATED_FIELDS);
+
+    private enum Kind {
+        SKIP, BOOL, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, BYTES, ENUM, POJO
+    }
+
+    private final String name;
+    private final Class<?>[] types;
+    private final Kind[] kinds;
+    private final Schema<?>[] schemas;
+
+    private ArgumentSchema(Method method, Kind[] kinds) {
+        this.name = method.getDeclaringClass().getName() + "." + method.getName();
+        this.types = method.getParameterTypes();
+        this.kinds = kinds;
+        this.schemas = new Schema<?>[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == Kind.POJO) {
+                schemas[i] = RuntimeSchema.getSchema(types[i], STRATEGY);
+            }
+        }
+    }
+
+    /**
+     * @param method the protocol method
+     * @return null if any parameter is NOT a scalar / String / byte[] / enum / final POJO / Consumer
+     */
+    public static ArgumentSchema of(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Kind[] kinds = new Kind[types.length];
+        for (int i = 0; i < types.length; i++) {
+            kinds[i] = kind(types[i]);
+            if (kinds[i] == null) {
+                return null;
+            }
+        }
+        return new ArgumentSchema(method, kinds);
+    }
+
+    private static Kind kind(Class<?> type) {
+        if (type.equals(Consumer.class)) {
+            return Kind.SKIP;
+        }
+        if (type.equals(boolean.class) || type.equals(Boolean.class)) {
+            return Kind.BOOL;
+        }
+        if (type.equals(byte.class) || type.equals(Byte.class)) {
+            return Kind.BYTE;
+        }
+        if (type.equals(short.class) || type.equals(Short.class)) {
+            return Kind.SHORT;
+        }
+        if (type.equals(char.class) || type.equals(Character.class)) {
+            return Kind.CHAR;
+        }
+        if (type.equals(int.class) || type.equals(Integer.class)) {
+            return Kind.INT;
+        }
+        if (type.equals(long.class) || type.equals(Long.class)) {
+            return Kind.LONG;
+        }
+        if (type.equals(float.class) || type.equals(Float.class)) {
+            return Kind.FLOAT;
+        }
+        if (type.equals(double.class) || type.equals(Double.class)) {
+            return Kind.DOUBLE;
+        }
+        if (type.equals(String.class)) {
+            return Kind.STRING;
+        }
+        if (type.equals(byte[].class)) {
+            return Kind.BYTES;
+        }
+        if (type.isEnum()) {
+            return Kind.ENUM;
+        }
+        if (type.isPrimitive() || type.isArray() || !Modifier.isFinal(type.getModifiers()) ||
+                type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+            return null;
+        }
+        return Kind.POJO;
+    }
+
+    public ByteString encode(Object[] args) {
+        return Serializer.encode(args, this);
+    }
+
+    public Object[] decode(ByteString data) {
+        Object[] args = newMessage();
+        Serializer.decode(data, args, this);
+        return args;
+    }
+
+    @Override
+    public String getFieldName(int number) {
+        return number > 0 && number <= kinds.length ? "arg" + (number - 1) : null;
+    }
+
+    @Override
+    public int getFieldNumber(String name) {
+        try {
+            return name.startsWith("arg") ? Integer.parseInt(name.substring(3)) + 1 : 0;
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean isInitialized(Object[] message) {
+        return true;
+    }
+
+    @Override
+    public Object[] newMessage() {
+        return new Object[kinds.length];
+    }
+
+    @Override
+    public String messageName() {
+        return name;
+    }
+
+    @Override
+    public String messageFullName() {
+        return name;
+    }
+
+    @Override
+    public Class<? super Object[]> typeClass() {
+        return Object[].class;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void mergeFrom(Input input, Object[] args) throws IOException {
+        for (int number = input.readFieldNumber(this); number != 0; number = input.readFieldNumber(this)) {
+            int i = number - 1;
+            if (i >= kinds.length || kinds[i] == Kind.SKIP) {
+                input.handleUnknownField(number, this);
+                continue;
+            }
+            switch (kinds[i]) {
+                case BOOL:
+                    args[i] = input.readBool();
+                    break;
+                case BYTE:
+                    args[i] = (byte) input.readInt32();
+                    break;
+                case SHORT:
+                    args[i] = (short) input.readInt32();
+                    break;
+                case CHAR:
+                    args[i] = (char) input.readInt32();
+                    break;
+                case INT:
+                    args[i] = input.readInt32();
+                    break;
+                case LONG:
+                    args[i] = input.readInt64();
+                    break;
+                case FLOAT:
+                    args[i] = input.readFloat();
+                    break;
+                case DOUBLE:
+                    args[i] = input.readDouble();
+                    break;
+                case STRING:
+                    args[i] = input.readString();
+                    break;
+                case BYTES:
+                    args[i] = input.readByteArray();
+                    break;
+                case ENUM:
+                    args[i] = Enum.valueOf((Class) types[i], input.readString());
+                    break;
+                default:
+                    args[i] = input.mergeObject(null, (Schema<Object>) schemas[i]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * null, the Consumer and the placeholder (of Packet.boxing) are absent
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(Output output, Object[] args) throws IOException {
+        for (int i = 0; i < kinds.length && i < args.length; i++) {
+            Object value = args[i];
+            if (value == null || kinds[i] == Kind.SKIP || value.getClass().equals(Object.class)) {
+                continue;
+            }
+            int number = i + 1;
+            switch (kinds[i]) {
+                case BOOL:
+                    output.writeBool(number, (Boolean) value, false);
+                    break;
+                case BYTE:
+                case SHORT:
+                    output.writeInt32(number, ((Number) value).intValue(), false);
+                    break;
+                case CHAR:
+                    output.writeInt32(number, (Character) value, false);
+                    break;
+                case INT:
+                    output.writeInt32(number, (Integer) value, false);
+                    break;
+                case LONG:
+                    output.writeInt64(number, (Long) value, false);
+                    break;
+                case FLOAT:
+                    output.writeFloat(number, (Float) value, false);
+                    break;
+                case DOUBLE:
+                    output.writeDouble(number, (Double) value, false);
+                    break;
+                case STRING:
+                    output.writeString(number, (String) value, false);
+                    break;
+                case BYTES:
+                    output.writeByteArray(number, (byte[]) value, false);
+                    break;
+                case ENUM:
+                    output.writeString(number, ((Enum<?>) value).name(), false);
+                    break;
+                default:
+                    output.writeObject(number, value, (Schema<Object>) schemas[i], false);
+                    break;
+            }
+        }
+    }
+
+}
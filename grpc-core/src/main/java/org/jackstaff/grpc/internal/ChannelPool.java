@@ -0,0 +1,357 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.internal;
+
+import io.grpc.*;
+import org.jackstaff.grpc.configuration.Balancer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the channels of one authority, N channels per endpoint, each call is placed by the Balancer.
+ * long-lived streaming calls are spread over the channels with the fewest streams,
+ * unary calls by the latency score of the endpoints, then on a channel of that endpoint without streams if there's one,
+ * so the streams and the unary traffic are kept apart when channels > 1.
+ * @author reco@jackstaff.org
+ * @see Balancer
+ */
+@Internal
+public final class ChannelPool extends ManagedChannel {
+
+    private static final double ALPHA = 0.3;
+    private static final double DECAY = TimeUnit.SECONDS.toNanos(10);
+    private static final long PENALTY = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * the EWMA of the observed call latency(nanos) of one endpoint, 0 when unknown yet.
+     * a failure is observed as its elapsed time plus a penalty, and the average decays to the neutral (the average of
+     * all the endpoints) while the endpoint isn't observed, so a penalized endpoint is tried again some time later.
+     * updated without lock, a lost update only delays the average a little.
+     */
+    private static final class Endpoint {
+
+        private volatile double latency;
+        private volatile long stamp;
+
+        void observe(long now, long nanos) {
+            double latency = this.latency;
+            this.latency = latency == 0 ? Math.max(1, nanos) : latency + ALPHA * (nanos - latency);
+            this.stamp = now;
+        }
+
+        double latency(long now, double neutral) {
+            double latency = this.latency;
+            return latency == 0 ? neutral : neutral + (latency - neutral) * Math.exp((stamp - now) / DECAY);
+        }
+
+    }
+
+    private static final class Slot {
+
+        private final Endpoint endpoint;
+        private final ManagedChannel channel;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger streams = new AtomicInteger();
+
+        Slot(Endpoint endpoint, ManagedChannel channel) {
+            this.endpoint = endpoint;
+            this.channel = channel;
+        }
+
+    }
+
+    /**
+     * compare the slots of one call, the latency score: (in-flight + 1) * latency
+     */
+    private static final class Scorer {
+
+        private final boolean streaming;
+        private final long now = System.nanoTime();
+        private final double neutral;
+
+        Scorer(Slot[] slots, boolean streaming) {
+            this.streaming = streaming;
+            double sum = 0;
+            int known = 0;
+            for (Slot slot : slots) {
+                double latency = slot.endpoint.latency;
+                if (latency > 0) {
+                    sum += latency;
+                    known++;
+                }
+            }
+            this.neutral = known > 0 ? sum / known : 0;
+        }
+
+        double score(Slot slot) {
+            return (slot.inFlight.get() + 1) * slot.endpoint.latency(now, neutral);
+        }
+
+        int compare(Slot slot, Slot other) {
+            if (streaming) {
+                int streams = Integer.compare(slot.streams.get(), other.streams.get());
+                if (streams != 0) {
+                    return streams;
+                }
+            }
+            int score = Double.compare(score(slot), score(other));
+            if (score != 0) {
+                return score;
+            }
+            //an endpoint never observed scores the average, on a tie it's tried first
+            int known = Boolean.compare(slot.endpoint.latency > 0, other.endpoint.latency > 0);
+            return known != 0 ? known : Integer.compare(slot.inFlight.get(), other.inFlight.get());
+        }
+
+    }
+
+    /**
+     * the endpoints already tried by the call's attempts (hedging), the call prefer the others
+     */
+    public static final CallOptions.Key<Set<Object>> AVOID = CallOptions.Key.create("jackstaff-avoid");
+
+    private final Balancer balancer;
+    private final Slot[] slots;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param balancer the balancer
+     * @param channels target(host:port) to its channels
+     */
+    public ChannelPool(Balancer balancer, Map<String, List<ManagedChannel>> channels) {
+        this.balancer = balancer != null ? balancer : Balancer.LEAST_REQUEST;
+        this.slots = channels.entrySet().stream().flatMap(entry -> {
+            Endpoint endpoint = new Endpoint();
+            return entry.getValue().stream().map(channel -> new Slot(endpoint, channel));
+        }).toArray(Slot[]::new);
+        if (slots.length == 0) {
+            throw new IllegalArgumentException("channels is empty");
+        }
+    }
+
+    private Slot select(boolean streaming) {
+        if (slots.length == 1) {
+            return slots[0];
+        }
+        return apart(balance(streaming), streaming);
+    }
+
+    /**
+     * a unary call placed on a channel with streams move to the least loaded channel of the same endpoint without streams
+     */
+    private Slot apart(Slot slot, boolean streaming) {
+        if (streaming || slot.streams.get() == 0) {
+            return slot;
+        }
+        Slot free = null;
+        for (Slot other : slots) {
+            if (other.endpoint == slot.endpoint && other.streams.get() == 0 && (free == null || other.inFlight.get() < free.inFlight.get())) {
+                free = other;
+            }
+        }
+        return free != null ? free : slot;
+    }
+
+    private Slot balance(boolean streaming) {
+        switch (balancer) {
+            case ROUND_ROBIN:
+                return slots[(next.getAndIncrement() & Integer.MAX_VALUE) % slots.length];
+            case POWER_OF_TWO_CHOICES: {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(slots.length);
+                int second = (first + 1 + random.nextInt(slots.length - 1)) % slots.length;
+                return new Scorer(slots, streaming).compare(slots[first], slots[second]) <= 0 ? slots[first] : slots[second];
+            }
+            case LEAST_REQUEST:
+            default: {
+                Scorer scorer = new Scorer(slots, streaming);
+                Slot best = slots[0];
+                for (int i = 1; i < slots.length; i++) {
+                    if (scorer.compare(slots[i], best) < 0) {
+                        best = slots[i];
+                    }
+                }
+                return best;
+            }
+        }
+    }
+
+    private Slot select(boolean streaming, Set<Object> avoid) {
+        if (avoid == null) {
+            return select(streaming);
+        }
+        Scorer scorer = new Scorer(slots, streaming);
+        Slot best = null;
+        for (Slot slot : slots) {
+            if (!avoid.contains(slot.endpoint) && (best == null || scorer.compare(slot, best) < 0)) {
+                best = slot;
+            }
+        }
+        best = best == null ? select(streaming) : apart(best, streaming);
+        avoid.add(best.endpoint);
+        return best;
+    }
+
+    private static void release(Slot slot, boolean streaming) {
+        slot.inFlight.decrementAndGet();
+        if (streaming) {
+            slot.streams.decrementAndGet();
+        }
+    }
+
+    /**
+     * unary: the elapsed time, the failures of the endpoint (NOT the application's) add the penalty.
+     * streaming: only the failures, as the penalty. the cancelled calls (by the caller, or the hedging) are skipped.
+     */
+    private static void observe(Endpoint endpoint, boolean streaming, Status status, long start) {
+        boolean failure;
+        switch (status.getCode()) {
+            case CANCELLED:
+                return;
+            case UNAVAILABLE:
+            case DEADLINE_EXCEEDED:
+            case RESOURCE_EXHAUSTED:
+                failure = true;
+                break;
+            default:
+                failure = false;
+        }
+        if (streaming && !failure) {
+            return;
+        }
+        long now = System.nanoTime();
+        endpoint.observe(now, (streaming ? 0 : now - start) + (failure ? PENALTY : 0));
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions options) {
+        boolean streaming = method.getType() != MethodDescriptor.MethodType.UNARY;
+        Slot slot = select(streaming, options.getOption(AVOID));
+        slot.inFlight.incrementAndGet();
+        if (streaming) {
+            slot.streams.incrementAndGet();
+        }
+        ClientCall<ReqT, RespT> call;
+        try {
+            call = slot.channel.newCall(method, options);
+        } catch (RuntimeException ex) {
+            release(slot, streaming);
+            throw ex;
+        }
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+
+            @Override
+            public void start(Listener<RespT> listener, Metadata headers) {
+                long start = System.nanoTime();
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(listener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            release(slot, streaming);
+                            observe(slot.endpoint, streaming, status, start);
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException ex) {
+                    release(slot, streaming);
+                    throw ex;
+                }
+            }
+
+        };
+    }
+
+    /**
+     * @return the in-flight calls of each channel, in the order of endpoints
+     */
+    public int[] inFlight() {
+        int[] inFlight = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            inFlight[i] = slots[i].inFlight.get();
+        }
+        return inFlight;
+    }
+
+    /**
+     * @return the latency EWMA(nanos) of each channel's endpoint, in the order of endpoints, 0 when unknown yet
+     */
+    public double[] latency() {
+        double[] latency = new double[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            latency[i] = slots[i].endpoint.latency;
+        }
+        return latency;
+    }
+
+    @Override
+    public String authority() {
+        return slots[0].channel.authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        for (Slot slot : slots) {
+            slot.channel.shutdown();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (Slot slot : slots) {
+            if (!slot.channel.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (Slot slot : slots) {
+            if (!slot.channel.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        for (Slot slot : slots) {
+            slot.channel.shutdownNow();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Slot slot : slots) {
+            if (!slot.channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
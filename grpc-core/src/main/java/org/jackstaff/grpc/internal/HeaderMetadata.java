@@ -18,6 +18,7 @@ package org.jackstaff.grpc.internal;
 
 import io.grpc.Attributes;
 import io.grpc.Context;
+import io.grpc.Deadline;
 import io.grpc.Grpc;
 import io.grpc.Metadata;
 import io.grpc.stub.AbstractStub;
@@ -35,6 +36,7 @@ public class HeaderMetadata<T> {
     public static final String LOCAL_ADDR = "local-addr";
 
     private static final String JACKSTAFF = "grpc-jackstaff";
+    private static final Context.Key<Deadline> DEADLINE = Context.key(JACKSTAFF + "-deadline");
 
     private final Metadata.Key<T> key;
     private final Context.Key<Metadata> contextKey;
@@ -49,6 +51,19 @@ public class HeaderMetadata<T> {
     public static HeaderMetadata<String> ROOT = string(JACKSTAFF);
     public static HeaderMetadata<byte[]> BINARY_ROOT = binary(JACKSTAFF+Metadata.BINARY_HEADER_SUFFIX);
 
+    /**
+     * the (v1) request arguments are packed by the method's typed schema when it's TYPED
+     * @see ArgumentSchema
+     */
+    public static HeaderMetadata<String> PACKING = string(JACKSTAFF + "-packing");
+    public static final String TYPED = "typed";
+
+    /**
+     * the (v1) Packet codec of the call, absent is the default (protostuff)
+     * @see org.jackstaff.grpc.PacketCodec
+     */
+    public static HeaderMetadata<String> CODEC = string(JACKSTAFF + "-codec");
+
     public static HeaderMetadata<String> string(String name) {
         return new HeaderMetadata<>(stringKey(name));
     }
@@ -91,10 +106,16 @@ public class HeaderMetadata<T> {
         return getValue(context, stringKey(name));
     }
 
-    <S extends AbstractStub<S>> S attach(S stub, T value){
-        Metadata headers = new Metadata();
+    /**
+     * the deadline of the inbound (server side) call in current request scope
+     * @return null if it's NOT in a server call, or the call has no deadline
+     */
+    public static Deadline deadline(){
+        return DEADLINE.get();
+    }
+
+    void put(Metadata headers, T value){
         headers.put(key, value);
-        return MetadataUtils.attachHeaders(stub, headers);
     }
 
     public T getValue(){
@@ -105,6 +126,10 @@ public class HeaderMetadata<T> {
         return getValue(context, key);
     }
 
+    public T getValue(Metadata headers){
+        return headers.get(key);
+    }
+
     public Context capture(String authority, Attributes attributes, Metadata headers){
         Metadata metadata = new Metadata();
         Optional.ofNullable(authority).filter(a->!a.isEmpty()).
@@ -114,7 +139,11 @@ public class HeaderMetadata<T> {
         Optional.ofNullable(attributes.get(Grpc.TRANSPORT_ATTR_LOCAL_ADDR)).map(Object::toString).
                 ifPresent(addr->metadata.put(stringKey(LOCAL_ADDR), addr));
         metadata.merge(headers);
-        return context.withValue(contextKey, metadata);
+        Deadline deadline = Context.current().getDeadline();
+        if (deadline == null) {
+            return context.withValue(contextKey, metadata);
+        }
+        return context.withValues(contextKey, metadata, DEADLINE, deadline);
     }
 
 }
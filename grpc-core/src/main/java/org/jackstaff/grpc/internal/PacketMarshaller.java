@@ -0,0 +1,287 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.internal;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * the marshaller of the Internal service, the same wire format as the protobuf one ( bytes data = 1 ),
+ * the data is drained to the outbound stream as is, and read from the inbound message into one array (the only copy).
+ * the (generated) InternalGrpc is kept as is, its method descriptors are re-built with this marshaller,
+ * both the client calls and the server service use them.
+ * @author reco@jackstaff.org
+ */
+public final class PacketMarshaller implements MethodDescriptor.PrototypeMarshaller<InternalProto.Packet> {
+
+    static final PacketMarshaller INSTANCE = new PacketMarshaller();
+
+    private static final MethodDescriptor<InternalProto.Packet, InternalProto.Packet> UNARY = marshalled(InternalGrpc.getUnaryMethod());
+    private static final MethodDescriptor<InternalProto.Packet, InternalProto.Packet> SERVER_STREAMING = marshalled(InternalGrpc.getServerStreamingMethod());
+    private static final MethodDescriptor<InternalProto.Packet, InternalProto.Packet> CLIENT_STREAMING = marshalled(InternalGrpc.getClientStreamingMethod());
+    private static final MethodDescriptor<InternalProto.Packet, InternalProto.Packet> BIDI_STREAMING = marshalled(InternalGrpc.getBidiStreamingMethod());
+    private static final ServiceDescriptor SERVICE = ServiceDescriptor.newBuilder(InternalGrpc.SERVICE_NAME).
+            setSchemaDescriptor(InternalGrpc.getServiceDescriptor().getSchemaDescriptor()).
+            addMethod(UNARY).addMethod(SERVER_STREAMING).addMethod(CLIENT_STREAMING).addMethod(BIDI_STREAMING).build();
+
+    /**
+     * field 1, length delimited
+     */
+    private static final int DATA_TAG = 10;
+
+    private PacketMarshaller() {
+    }
+
+    private static MethodDescriptor<InternalProto.Packet, InternalProto.Packet> marshalled(MethodDescriptor<InternalProto.Packet, InternalProto.Packet> method) {
+        return method.toBuilder(INSTANCE, INSTANCE).build();
+    }
+
+    public static MethodDescriptor<InternalProto.Packet, InternalProto.Packet> getUnaryMethod() {
+        return UNARY;
+    }
+
+    public static MethodDescriptor<InternalProto.Packet, InternalProto.Packet> getServerStreamingMethod() {
+        return SERVER_STREAMING;
+    }
+
+    public static MethodDescriptor<InternalProto.Packet, InternalProto.Packet> getClientStreamingMethod() {
+        return CLIENT_STREAMING;
+    }
+
+    public static MethodDescriptor<InternalProto.Packet, InternalProto.Packet> getBidiStreamingMethod() {
+        return BIDI_STREAMING;
+    }
+
+    /**
+     * @param generated the service bound by InternalGrpc.InternalImplBase
+     * @return the same service (handlers), but its methods use this marshaller
+     */
+    public static ServerServiceDefinition bindService(ServerServiceDefinition generated) {
+        return ServerServiceDefinition.builder(SERVICE).
+                addMethod(UNARY, handler(generated, UNARY)).
+                addMethod(SERVER_STREAMING, handler(generated, SERVER_STREAMING)).
+                addMethod(CLIENT_STREAMING, handler(generated, CLIENT_STREAMING)).
+                addMethod(BIDI_STREAMING, handler(generated, BIDI_STREAMING)).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCallHandler<InternalProto.Packet, InternalProto.Packet> handler(ServerServiceDefinition generated,
+                                                                                        MethodDescriptor<InternalProto.Packet, InternalProto.Packet> method) {
+        return (ServerCallHandler<InternalProto.Packet, InternalProto.Packet>) generated.getMethod(method.getFullMethodName()).getServerCallHandler();
+    }
+
+    @Override
+    public Class<InternalProto.Packet> getMessageClass() {
+        return InternalProto.Packet.class;
+    }
+
+    @Override
+    public InternalProto.Packet getMessagePrototype() {
+        return InternalProto.Packet.getDefaultInstance();
+    }
+
+    @Override
+    public InputStream stream(InternalProto.Packet value) {
+        return new PacketStream(value.getData());
+    }
+
+    @Override
+    public InternalProto.Packet parse(InputStream stream) {
+        try {
+            return stream instanceof KnownLength ? parseKnownLength(stream) : parse(read(stream));
+        } catch (IOException ex) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(ex).asRuntimeException();
+        }
+    }
+
+    /**
+     * the tag and the length are read from the stream, then only the data bytes, wrapped without another copy.
+     * that is the one copy left: grpc 1.29 has no zero copy access to the inbound buffers.
+     * other layouts (unknown fields, repeated data) and a length over the frame are parsed by protobuf
+     */
+    private static InternalProto.Packet parseKnownLength(InputStream stream) throws IOException {
+        int tag = stream.read();
+        if (tag < 0) {
+            return InternalProto.Packet.getDefaultInstance();
+        }
+        byte[] head = new byte[6];
+        head[0] = (byte) tag;
+        int position = 1;
+        long length = 0;
+        for (int shift = 0, b = tag == DATA_TAG ? 0x80 : 0; (b & 0x80) != 0; shift += 7) {
+            if (position == head.length || (b = stream.read()) < 0) {
+                return parseFrom(stream, new ByteArrayInputStream(head, 0, position));
+            }
+            head[position++] = (byte) b;
+            length |= (long) (b & 0x7F) << shift;
+        }
+        if (tag != DATA_TAG || length > stream.available()) {
+            return parseFrom(stream, new ByteArrayInputStream(head, 0, position));
+        }
+        byte[] data = new byte[(int) length];
+        int offset = 0;
+        while (offset < data.length) {
+            int count = stream.read(data, offset, data.length - offset);
+            if (count < 0) {
+                throw new EOFException("expect " + data.length + " bytes, read " + offset);
+            }
+            offset += count;
+        }
+        int next = stream.read();
+        if (next < 0) {
+            return InternalProto.Packet.newBuilder().setData(UnsafeByteOperations.unsafeWrap(data)).build();
+        }
+        return parseFrom(stream, new ByteArrayInputStream(head, 0, position), new ByteArrayInputStream(data),
+                new ByteArrayInputStream(new byte[]{(byte) next}));
+    }
+
+    /**
+     * @param read the bytes already read from the stream
+     */
+    private static InternalProto.Packet parseFrom(InputStream stream, InputStream... read) throws IOException {
+        List<InputStream> streams = new ArrayList<>(Arrays.asList(read));
+        streams.add(stream);
+        return InternalProto.Packet.parseFrom(new SequenceInputStream(Collections.enumeration(streams)));
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        return drain(stream, new ByteArrayOutputStream());
+    }
+
+    private static byte[] drain(InputStream stream, ByteArrayOutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = stream.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * the message has only the data field in common, others (unknown fields, repeated data) are parsed by protobuf
+     */
+    private static InternalProto.Packet parse(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return InternalProto.Packet.getDefaultInstance();
+        }
+        if (bytes[0] == DATA_TAG) {
+            int position = 1;
+            long length = 0;
+            for (int shift = 0; position < bytes.length && shift < 35; shift += 7) {
+                byte b = bytes[position++];
+                length |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (position + length == bytes.length) {
+                        return InternalProto.Packet.newBuilder().
+                                setData(UnsafeByteOperations.unsafeWrap(bytes, position, (int) length)).build();
+                    }
+                    break;
+                }
+            }
+        }
+        return InternalProto.Packet.parseFrom(bytes);
+    }
+
+    private static byte[] header(int length) {
+        if (length == 0) {
+            return new byte[0];
+        }
+        byte[] header = new byte[6];
+        int position = 0;
+        header[position++] = DATA_TAG;
+        while ((length & ~0x7F) != 0) {
+            header[position++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        header[position++] = (byte) length;
+        return Arrays.copyOf(header, position);
+    }
+
+    /**
+     * tag, length and the data, drained to the outbound stream without serialize to another buffer
+     */
+    private static final class PacketStream extends InputStream implements KnownLength, Drainable {
+
+        private final byte[] header;
+        private final ByteString data;
+        private InputStream delegate;
+        private int available;
+
+        PacketStream(ByteString data) {
+            this.header = header(data.size());
+            this.data = data;
+            this.available = header.length + data.size();
+        }
+
+        private InputStream delegate() {
+            if (delegate == null) {
+                delegate = new SequenceInputStream(new ByteArrayInputStream(header), data.newInput());
+            }
+            return delegate;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int written = available;
+            if (delegate == null) {
+                target.write(header);
+                data.writeTo(target);
+            } else {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = delegate.read(buffer)) >= 0) {
+                    target.write(buffer, 0, count);
+                }
+            }
+            delegate = new ByteArrayInputStream(new byte[0]);
+            available = 0;
+            return written;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate().read();
+            if (b >= 0) {
+                available--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = delegate().read(b, off, len);
+            if (count > 0) {
+                available -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return available;
+        }
+
+    }
+
+}
@@ -16,19 +16,64 @@
 
 package org.jackstaff.grpc.internal;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.protostuff.GraphIOUtil;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
 import io.protostuff.runtime.DefaultIdStrategy;
 import io.protostuff.runtime.IdStrategy;
 import io.protostuff.runtime.RuntimeSchema;
 import org.jackstaff.grpc.Packet;
+import org.jackstaff.grpc.PacketCodec;
 import org.jackstaff.grpc.TransFormRegistry;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * @author reco@jackstaff.org
  */
 public class Serializer {
 
+    private static final int MIN_BUFFER_SIZE = LinkedBuffer.DEFAULT_BUFFER_SIZE;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * the per thread LinkedBuffer, re-sized to the moving average of the recent payload sizes
+     */
+    private static final class Buffer {
+
+        private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+        private LinkedBuffer buffer = LinkedBuffer.allocate(MIN_BUFFER_SIZE);
+        private int capacity = MIN_BUFFER_SIZE;
+        private int average = MIN_BUFFER_SIZE;
+
+        static Buffer get() {
+            return BUFFERS.get();
+        }
+
+        LinkedBuffer buffer() {
+            return buffer;
+        }
+
+        /**
+         * clear the buffer after use, grow it when the average is over the capacity, shrink it when far below
+         */
+        void release(int size) {
+            buffer.clear();
+            average += (size - average) >> 3;
+            int fit = Math.min(MAX_BUFFER_SIZE, Math.max(MIN_BUFFER_SIZE, Integer.highestOneBit(Math.max(average - 1, 1)) << 1));
+            if (fit > capacity || fit < capacity >> 2) {
+                buffer = LinkedBuffer.allocate(fit);
+                capacity = fit;
+            }
+        }
+
+    }
+
     @SuppressWarnings("rawtypes")
     public static void registerPacketTransForm() {
         IdStrategy idStrategy= new DefaultIdStrategy(
@@ -39,10 +84,90 @@ public class Serializer {
         TransFormRegistry<Packet, InternalProto.Packet, InternalProto.Packet.Builder> registry =
                 new TransFormRegistry<>(Packet.class, Packet::new, InternalProto.Packet.class,
                 InternalProto.Packet.Builder::build, InternalProto.Packet::newBuilder);
-        registry.bytes(t->true, packet -> ProtostuffIOUtil.toByteArray(packet, schema, LinkedBuffer.allocate()),
-                (packet, bytes) -> ProtostuffIOUtil.mergeFrom(bytes, packet, schema),
+        registry.byteString(t->true, packet -> encode(packet, schema), (packet, data) -> decode(data, packet, schema),
                 InternalProto.Packet::getData, InternalProto.Packet.Builder::setData);
         registry.register();
+        PacketCodec.register(new GraphCodec(schema));
+    }
+
+    /**
+     * the protostuff graph codec of Packet
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final class GraphCodec implements PacketCodec {
+
+        private final Schema<Packet> schema;
+
+        GraphCodec(Schema<Packet> schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public String name() {
+            return GRAPH;
+        }
+
+        @Override
+        public ByteString encode(Packet<?> packet) {
+            return Serializer.encode(packet, schema, true);
+        }
+
+        @Override
+        public Packet<?> decode(ByteString data) {
+            Packet<?> packet = new Packet<>();
+            Serializer.decode(data, packet, schema, true);
+            return packet;
+        }
+
+    }
+
+    static <T> ByteString encode(T message, Schema<T> schema) {
+        return encode(message, schema, false);
+    }
+
+    static <T> void decode(ByteString data, T message, Schema<T> schema) {
+        decode(data, message, schema, false);
+    }
+
+    /**
+     * encode with the thread's buffer, the result array is owned by the ByteString, so it's wrapped without copy
+     */
+    private static <T> ByteString encode(T message, Schema<T> schema, boolean graph) {
+        Buffer buffer = Buffer.get();
+        byte[] data = null;
+        try {
+            data = graph ? GraphIOUtil.toByteArray(message, schema, buffer.buffer()) :
+                    ProtostuffIOUtil.toByteArray(message, schema, buffer.buffer());
+            return UnsafeByteOperations.unsafeWrap(data);
+        } finally {
+            buffer.release(data == null ? 0 : data.length);
+        }
+    }
+
+    /**
+     * decode from the ByteString's input stream, the thread's buffer is the read buffer, no copy of the whole data
+     */
+    private static <T> void decode(ByteString data, T message, Schema<T> schema, boolean graph) {
+        if (data.size() <= MIN_BUFFER_SIZE) {
+            if (graph) {
+                GraphIOUtil.mergeFrom(data.toByteArray(), message, schema);
+            } else {
+                ProtostuffIOUtil.mergeFrom(data.toByteArray(), message, schema);
+            }
+            return;
+        }
+        Buffer buffer = Buffer.get();
+        try {
+            if (graph) {
+                GraphIOUtil.mergeFrom(data.newInput(), message, schema, buffer.buffer());
+            } else {
+                ProtostuffIOUtil.mergeFrom(data.newInput(), message, schema, buffer.buffer());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            buffer.buffer().clear();
+        }
     }
 
 }
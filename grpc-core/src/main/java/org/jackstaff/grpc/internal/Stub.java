@@ -17,17 +17,26 @@
 package org.jackstaff.grpc.internal;
 
 import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.Deadline;
 import io.grpc.Internal;
 import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
 import io.grpc.stub.AbstractStub;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
 import io.grpc.stub.StreamObserver;
 import org.jackstaff.grpc.MethodDescriptor;
 import org.jackstaff.grpc.Transform;
 
 import java.time.Duration;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static io.grpc.stub.ClientCalls.*;
 
@@ -45,6 +54,12 @@ public final class Stub<S extends AbstractStub<S>, ReqT, RespT> {
     private MethodDescriptor descriptor;
     private Transform<ReqT, ?> reqTransform;
     private Transform<RespT, ?> respTransform;
+    private boolean typed;
+    private String codec;
+
+    private Metadata headers;
+    private CallOptions options;
+    private Duration timeout;
 
     public Stub(String authority, ManagedChannel channel, Duration defaultTimeout) {
         this.authority = authority;
@@ -52,16 +67,51 @@ public final class Stub<S extends AbstractStub<S>, ReqT, RespT> {
         this.defaultTimeout = Optional.ofNullable(defaultTimeout).orElse(Duration.ZERO);
     }
 
-    @SuppressWarnings("unchecked")
     public Stub(Stub<S, ReqT, RespT> prototype, MethodDescriptor descriptor) {
+        this(prototype, descriptor, null, false);
+    }
+
+    /**
+     * the per method stub
+     * @param prototype the authority's stub
+     * @param descriptor the method
+     * @param codec the (v1) Packet codec, null is the default
+     * @param typed pack the (v1) request arguments by the method's typed schema, if the method has one
+     */
+    @SuppressWarnings("unchecked")
+    public Stub(Stub<S, ReqT, RespT> prototype, MethodDescriptor descriptor, String codec, boolean typed) {
         this(prototype.authority, prototype.channel, prototype.defaultTimeout);
         this.descriptor = descriptor;
-        this.reqTransform = descriptor.requestTransform();
-        this.respTransform = descriptor.responseTransform();
+        Transform<Object, ?> packet = descriptor.packetTransform(codec);
+        this.codec = packet != null ? codec : null;
+        this.typed = typed && descriptor.argumentsTransform() != null;
+        this.reqTransform = this.typed ? descriptor.argumentsTransform() : packet != null ? (Transform<ReqT, ?>) packet : descriptor.requestTransform();
+        this.respTransform = packet != null ? (Transform<RespT, ?>) packet : descriptor.responseTransform();
         CallOptions options = CallOptions.DEFAULT.withAuthority(authority);
         this.stub = (S)(descriptor.isBlockingMethod() ? new BlockingStub(channel, options) : new AsyncStub(channel, options));
     }
 
+    /**
+     * per call stub, reuse the template's prebuilt stub/transforms,
+     * headers/deadline only live in this call and are applied once at newCall
+     * @param template the per method stub
+     */
+    public Stub(Stub<S, ReqT, RespT> template) {
+        this(template.authority, template.channel, template.defaultTimeout);
+        this.descriptor = template.descriptor;
+        this.reqTransform = template.reqTransform;
+        this.respTransform = template.respTransform;
+        this.stub = template.stub;
+        this.typed = template.typed;
+        this.codec = template.codec;
+        if (typed) {
+            attach(HeaderMetadata.PACKING, HeaderMetadata.TYPED);
+        }
+        if (codec != null) {
+            attach(HeaderMetadata.CODEC, codec);
+        }
+    }
+
     public String getAuthority() {
         return authority;
     }
@@ -69,50 +119,170 @@ public final class Stub<S extends AbstractStub<S>, ReqT, RespT> {
     public ManagedChannel getChannel() {
         return channel;
     }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    /**
+     * @return the request transform of the stub's codec
+     */
+    @SuppressWarnings("unchecked")
+    public <Pojo, Proto> Transform<Pojo, Proto> requestTransform() {
+        return (Transform<Pojo, Proto>) reqTransform;
+    }
     
+    /**
+     * the per call timeout, override the stream's / method's / default timeout
+     * @param timeout timeout
+     */
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
     public void attachDefaultDeadline() {
-        attachDeadline(defaultTimeout);
+        attachDeadline(null);
     }
 
+    /**
+     * the deadline is min(the first positive of: per call timeout, duration, method's @Timeout, default timeout;
+     * the remaining budget of the inbound call in current request scope)
+     * @param duration the timeout of the call's stream
+     */
     public void attachDeadline(Duration duration) {
-        Optional.of(Optional.ofNullable(duration).filter(d->d.toMillis()>300).orElse(defaultTimeout)).filter(d->d.toMillis()>300).
-                ifPresent(t -> stub = stub.withDeadlineAfter(t.toMillis(), TimeUnit.MILLISECONDS));
+        Deadline deadline = deadline(duration);
+        if (deadline != null) {
+            options = options().withDeadline(deadline);
+        }
+    }
+
+    /**
+     * the deadline of the call, resolved as {@link #attachDeadline(Duration)}, for the waits NOT on a gRPC call (batch, single flight)
+     * @param duration the timeout of the call's stream
+     * @return null if no timeout at all
+     */
+    public Deadline deadline(Duration duration) {
+        Deadline deadline = Stream.of(timeout, duration, descriptor != null ? descriptor.getTimeout() : null, defaultTimeout).
+                filter(Objects::nonNull).filter(d -> !d.isNegative() && !d.isZero()).findFirst().
+                map(t -> Deadline.after(t.toNanos(), TimeUnit.NANOSECONDS)).orElse(null);
+        Deadline inbound = HeaderMetadata.deadline();
+        return inbound != null && (deadline == null || inbound.isBefore(deadline)) ? inbound : deadline;
+    }
+
+    /**
+     * the option of all the calls of the method, set on the per method stub
+     */
+    public <T> void setOption(CallOptions.Key<T> key, T value) {
+        stub = stub.withOption(key, value);
+    }
+
+    /**
+     * the compression of all the calls of the method, set on the per method stub
+     * @param encoding the message encoding
+     */
+    public void setCompression(String encoding) {
+        stub = stub.withCompression(encoding);
+    }
+
+    public <T> void attachOption(CallOptions.Key<T> key, T value) {
+        options = options().withOption(key, value);
     }
 
     public <T> void attach(HeaderMetadata<T> metadata, T value) {
-        this.stub = metadata.attach(this.stub, value);
+        metadata.put(headers(), value);
     }
 
     public void attach(String name, String value) {
-        this.stub = HeaderMetadata.attachString(this.stub, name, value);
+        headers().put(HeaderMetadata.stringKey(name), value);
     }
 
     public void attach(String name, byte[] value) {
-        this.stub = HeaderMetadata.attachBinary(this.stub, name, value);
+        headers().put(HeaderMetadata.binaryKey(name), value);
+    }
+
+    private Metadata headers() {
+        if (headers == null) {
+            headers = new Metadata();
+        }
+        return headers;
+    }
+
+    private Channel channel() {
+        return headers == null ? stub.getChannel() :
+                ClientInterceptors.intercept(stub.getChannel(), MetadataUtils.newAttachHeadersInterceptor(headers));
+    }
+
+    private CallOptions options() {
+        return options != null ? options : stub.getCallOptions();
+    }
+
+    /**
+     * the transformed response observer, keep the ClientResponseObserver's beforeStart (flow control of Publisher)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <T> StreamObserver<T> responseObserver(StreamObserver<RespT> observer) {
+        StreamObserver<T> built = (StreamObserver<T>) respTransform.buildObserver(observer);
+        if (!(observer instanceof ClientResponseObserver)) {
+            return built;
+        }
+        return new ClientResponseObserver<Object, T>() {
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<Object> requestStream) {
+                ((ClientResponseObserver) observer).beforeStart(requestStream);
+            }
+
+            @Override
+            public void onNext(T value) {
+                built.onNext(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                built.onError(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                built.onCompleted();
+            }
+
+        };
     }
 
     public RespT blockingUnary(ReqT request){
-        return respTransform.from(blockingUnaryCall(stub.getChannel(), descriptor.grpcMethod(), stub.getCallOptions(), reqTransform.build(request)));
+        return respTransform.from(blockingUnaryCall(channel(), descriptor.grpcMethod(), options(), reqTransform.build(request)));
     }
 
     public Iterator<RespT> blockingServerStreaming(ReqT request){
-        return respTransform.fromIterator(blockingServerStreamingCall(stub.getChannel(), descriptor.grpcMethod(), stub.getCallOptions(), reqTransform.build(request)));
+        return respTransform.fromIterator(blockingServerStreamingCall(channel(), descriptor.grpcMethod(), options(), reqTransform.build(request)));
     }
 
     public void asyncUnary(ReqT request, StreamObserver<RespT> observer) {
-        asyncUnaryCall(stub.getChannel().newCall(descriptor.grpcMethod(), stub.getCallOptions()), reqTransform.build(request), respTransform.buildObserver(observer));
+        asyncUnaryCall(channel().newCall(descriptor.grpcMethod(), options()), reqTransform.build(request), responseObserver(observer));
     }
 
     public void asyncServerStreaming(ReqT request, StreamObserver<RespT> observer) {
-        asyncServerStreamingCall(stub.getChannel().newCall(descriptor.grpcMethod(), stub.getCallOptions()), reqTransform.build(request), respTransform.buildObserver(observer));
+        asyncServerStreamingCall(channel().newCall(descriptor.grpcMethod(), options()), reqTransform.build(request), responseObserver(observer));
     }
 
     public StreamObserver<ReqT> asyncClientStreaming(StreamObserver<RespT> observer) {
-        return reqTransform.fromObserver(asyncClientStreamingCall(stub.getChannel().newCall(descriptor.grpcMethod(), stub.getCallOptions()), respTransform.buildObserver(observer)));
+        return reqTransform.fromObserver(asyncClientStreamingCall(channel().newCall(descriptor.grpcMethod(), options()), responseObserver(observer)));
     }
 
     public StreamObserver<ReqT> asyncBidiStreaming(StreamObserver<RespT> observer) {
-        return reqTransform.fromObserver(asyncBidiStreamingCall(stub.getChannel().newCall(descriptor.grpcMethod(), stub.getCallOptions()), respTransform.buildObserver(observer)));
+        return reqTransform.fromObserver(asyncBidiStreamingCall(channel().newCall(descriptor.grpcMethod(), options()), responseObserver(observer)));
+    }
+
+    /**
+     * bidi streaming on the given grpc method with this stub's headers/transforms, like the Internal batch stream
+     * @param method the grpc bidi streaming method
+     * @param observer the response observer
+     * @return the request observer
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public StreamObserver<ReqT> asyncBidiStreaming(io.grpc.MethodDescriptor method, StreamObserver<RespT> observer) {
+        return reqTransform.fromObserver(asyncBidiStreamingCall(channel().newCall(method, options()), responseObserver(observer)));
     }
 
 }
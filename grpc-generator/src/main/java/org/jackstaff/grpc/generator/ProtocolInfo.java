@@ -16,10 +16,7 @@
 
 package org.jackstaff.grpc.generator;
 
-import com.squareup.javapoet.AnnotationSpec;
-import com.squareup.javapoet.FieldSpec;
-import com.squareup.javapoet.MethodSpec;
-import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.*;
 import org.jackstaff.grpc.MethodType;
 import org.jackstaff.grpc.annotation.*;
 
@@ -46,6 +43,7 @@ class ProtocolInfo {
     private final List<MethodInfo> methods;
 
     private TypeSpec.Builder builder;
+    private ProxyInfo proxy;
 
     public ProtocolInfo(ProcessingEnvironment processingEnv, TransFormInfos transForms, String serviceName, TypeElement grpc, List<MethodInfo> methods) {
         this.processingEnv = processingEnv;
@@ -72,6 +70,7 @@ class ProtocolInfo {
     public void build(){
         this.builder = TypeSpec.interfaceBuilder(simpleName()).
                 addModifiers(Modifier.PUBLIC).addAnnotation(Protocol.class);
+        this.proxy = new ProxyInfo(processingEnv, packageName(), ClassName.get(packageName(), simpleName()));
         for (MethodInfo method: methods){
             MethodSpec.Builder spec = MethodSpec.methodBuilder(method.getMethodName()).addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT);
             switch (method.getMethodType()){
@@ -93,6 +92,7 @@ class ProtocolInfo {
                     break;
             }
             builder.addMethod(spec.build());
+            addProxyMethod(spec.build());
             MethodSpec.Builder peer = MethodSpec.methodBuilder(method.getMethodName()).addModifiers(Modifier.PUBLIC, Modifier.DEFAULT);
             switch (method.getMethodType()) {
                 case UNARY:
@@ -109,6 +109,7 @@ class ProtocolInfo {
                     continue;
             }
             builder.addMethod(peer.build());
+            addProxyMethod(peer.build());
         }
         grpc.getEnclosedElements().stream().filter(t->t.getKind()== ElementKind.METHOD).map(Element::getSimpleName).
                 filter(name->"getServiceDescriptor".equals(name.toString())).findAny().ifPresent(name->{
@@ -120,8 +121,17 @@ class ProtocolInfo {
         });
     }
 
+    /**
+     * the proxy method dispatch straight to the call resolved at construct time
+     */
+    private void addProxyMethod(MethodSpec method){
+        proxy.addMethod(method, method.parameters.stream().map(p -> p.type instanceof ParameterizedTypeName ?
+                ((ParameterizedTypeName) p.type).rawType : p.type).collect(Collectors.toList()));
+    }
+
     public void write(){
         Utils.write(this.processingEnv, packageName(), builder);
+        proxy.write();
     }
 
 }
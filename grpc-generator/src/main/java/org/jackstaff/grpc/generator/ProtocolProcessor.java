@@ -18,6 +18,7 @@ package org.jackstaff.grpc.generator;
 
 import com.google.auto.service.AutoService;
 import io.grpc.stub.annotations.RpcMethod;
+import org.jackstaff.grpc.annotation.GenerateProxy;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Processor;
@@ -33,7 +34,8 @@ import java.util.stream.Stream;
 /**
  *  Generator Protocol interface,
  *  and POJO java bean when "option java_multiple_files = false" and "option java_outer_classname" end with "Proto" in .proto;
- *  (you can set compilerArgument with "-AJackstaffProto=${Proto}" at maven-compiler-plugin.configuration)
+ *  (you can set compilerArgument with "-AJackstaffProto=${Proto}" at maven-compiler-plugin.configuration);
+ *  and the ProtocolProxy of the hand-written @GenerateProxy interfaces
  * @author reco@jackstaff.org
  */
 @AutoService(Processor.class)
@@ -73,12 +75,14 @@ public class ProtocolProcessor extends AbstractProcessor {
         transForms.write();
         protocols.forEach(ProtocolInfo::build);
         protocols.forEach(ProtocolInfo::write);
+        roundEnv.getElementsAnnotatedWith(GenerateProxy.class).stream().
+                map(element -> ProxyInfo.of(this.processingEnv, element)).filter(Objects::nonNull).forEach(ProxyInfo::write);
         return true;
     }
 
     @Override
     public Set<String> getSupportedAnnotationTypes() {
-        return Collections.singleton(RpcMethod.class.getCanonicalName());
+        return new HashSet<>(Arrays.asList(RpcMethod.class.getCanonicalName(), GenerateProxy.class.getCanonicalName()));
     }
 
     @Override
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jackstaff.grpc.generator;
+
+import com.squareup.javapoet.*;
+import org.jackstaff.grpc.ProtocolProxy;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * the ProtocolProxy of a protocol interface: each method dispatch straight to the call resolved at construct time
+ * @author reco@jackstaff.org
+ */
+class ProxyInfo {
+
+    private final ProcessingEnvironment processingEnv;
+    private final String packageName;
+    private final ClassName protocol;
+    private final TypeSpec.Builder proxy;
+    private final MethodSpec.Builder constructor;
+    private int calls;
+
+    ProxyInfo(ProcessingEnvironment processingEnv, String packageName, ClassName protocol) {
+        this.processingEnv = processingEnv;
+        this.packageName = packageName;
+        this.protocol = protocol;
+        this.proxy = TypeSpec.classBuilder(protocol.simpleName() + ProtocolProxy.SUFFIX).
+                addModifiers(Modifier.PUBLIC, Modifier.FINAL).superclass(ProtocolProxy.class).addSuperinterface(protocol).
+                addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build());
+        ParameterSpec calls = ParameterSpec.builder(ParameterizedTypeName.get(ClassName.get(Function.class),
+                ClassName.get(Method.class), ClassName.get(ProtocolProxy.Call.class)), "calls").build();
+        this.constructor = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC).
+                addParameter(calls).addStatement("super($N)", calls);
+    }
+
+    /**
+     * the proxy of a hand-written (@GenerateProxy) interface, all its (and inherited) non static methods,
+     * null if it can't have one, the error is reported
+     */
+    static ProxyInfo of(ProcessingEnvironment processingEnv, Element element) {
+        if (element.getKind() != ElementKind.INTERFACE || element.getEnclosingElement().getKind() != ElementKind.PACKAGE ||
+                !((TypeElement) element).getTypeParameters().isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "@GenerateProxy only for the top level, non generic interface", element);
+            return null;
+        }
+        TypeElement type = (TypeElement) element;
+        ProxyInfo info = new ProxyInfo(processingEnv, Utils.packageName(type), ClassName.get(type));
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.STATIC) || method.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+                continue;
+            }
+            info.addMethod(MethodSpec.overriding(method).build(), method.getParameters().stream().
+                    map(p -> TypeName.get(processingEnv.getTypeUtils().erasure(p.asType()))).collect(Collectors.toList()));
+        }
+        return info;
+    }
+
+    /**
+     * @param method the signature
+     * @param parameterTypes the raw parameter types, for resolve the java.lang.reflect.Method
+     */
+    void addMethod(MethodSpec method, List<TypeName> parameterTypes) {
+        String field = "call" + calls++;
+        proxy.addField(ProtocolProxy.Call.class, field, Modifier.PRIVATE, Modifier.FINAL);
+        CodeBlock.Builder resolve = CodeBlock.builder().add("this.$N = resolve($T.class, $S", field, protocol, method.name);
+        parameterTypes.forEach(type -> resolve.add(", $T.class", type));
+        constructor.addStatement(resolve.add(")").build());
+        String args = method.parameters.stream().map(p -> p.name).collect(Collectors.joining(", "));
+        MethodSpec.Builder spec = MethodSpec.methodBuilder(method.name).addAnnotation(Override.class).
+                addModifiers(Modifier.PUBLIC).addTypeVariables(method.typeVariables).returns(method.returnType).
+                addParameters(method.parameters).addExceptions(method.exceptions).varargs(method.varargs);
+        CodeBlock invoke = CodeBlock.of("invoke($N, new $T[]{$L})", field, Object.class, args);
+        if (method.returnType.equals(TypeName.VOID)) {
+            spec.addStatement("$L", invoke);
+        } else {
+            spec.addStatement("return ($T) $L", method.returnType, invoke);
+        }
+        proxy.addMethod(spec.build());
+    }
+
+    void write() {
+        proxy.addMethod(constructor.build());
+        Utils.write(processingEnv, packageName, proxy);
+    }
+
+}
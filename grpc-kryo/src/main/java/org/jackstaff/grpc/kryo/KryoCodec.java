@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jackstaff.grpc.kryo;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.jackstaff.grpc.Packet;
+import org.jackstaff.grpc.PacketCodec;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * the Kryo codec of the (v1) Packet data, named "kryo", found by java.util.ServiceLoader when this jar is on the classpath.
+ * only the registered classes are read / written: the common JDK ones, and those of {@link #register(Class[])},
+ * registered in the same order on the client and the server. the server accept it only if it's in ServerConfig.codecs.
+ * NOT keep the shared / cyclic references (like protostuff, use "graph" for them),
+ * an exception payload is sent as its status and description, like the default codec.
+ * Kryo / its buffers are per thread, a buffer grown by a large payload is dropped after use.
+ * @author reco@jackstaff.org
+ * @see PacketCodec
+ */
+public final class KryoCodec implements PacketCodec {
+
+    public static final String KRYO = "kryo";
+
+    private static final int BUFFER = 4096;
+    private static final int MAX_BUFFER = 64 * 1024;
+
+    private static final List<Class<?>> TYPES = new CopyOnWriteArrayList<>(Arrays.asList(
+            Packet.class, Object.class, Object[].class, String[].class,
+            byte[].class, short[].class, int[].class, long[].class, float[].class, double[].class, boolean[].class, char[].class,
+            Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, Boolean.class, Character.class,
+            BigInteger.class, BigDecimal.class, Date.class,
+            ArrayList.class, LinkedList.class, Arrays.asList().getClass(), HashSet.class, LinkedHashSet.class, TreeSet.class,
+            HashMap.class, LinkedHashMap.class, TreeMap.class, StatusRuntimeException.class));
+
+    /**
+     * the per thread Kryo, and how many of TYPES it has registered
+     */
+    private static final class Registry {
+
+        private final Kryo kryo = new Kryo();
+        private int registered;
+
+        Registry() {
+            kryo.setRegistrationRequired(true);
+            kryo.setReferences(false);
+            Kryo.DefaultInstantiatorStrategy strategy = new Kryo.DefaultInstantiatorStrategy();
+            strategy.setFallbackInstantiatorStrategy(new StdInstantiatorStrategy());
+            kryo.setInstantiatorStrategy(strategy);
+            // Arrays.asList() has no add(), keep its array field as is
+            kryo.addDefaultSerializer(Arrays.asList().getClass(), FieldSerializer.class);
+            kryo.addDefaultSerializer(StatusRuntimeException.class, new StatusSerializer());
+        }
+
+        /**
+         * register the classes added since the last call, in the order of TYPES, so the ids are the same on every thread
+         */
+        Kryo kryo() {
+            while (registered < TYPES.size()) {
+                kryo.register(TYPES.get(registered++));
+            }
+            return kryo;
+        }
+
+    }
+
+    /**
+     * the status code and description, NOT the exception's class / fields / stack trace
+     */
+    private static final class StatusSerializer extends Serializer<StatusRuntimeException> {
+
+        @Override
+        public void write(Kryo kryo, Output output, StatusRuntimeException ex) {
+            output.writeInt(ex.getStatus().getCode().value(), true);
+            output.writeString(ex.getStatus().getDescription());
+        }
+
+        @Override
+        public StatusRuntimeException read(Kryo kryo, Input input, Class<StatusRuntimeException> type) {
+            return Status.fromCodeValue(input.readInt(true)).withDescription(input.readString()).asRuntimeException();
+        }
+
+    }
+
+    private static final ThreadLocal<Registry> REGISTRIES = ThreadLocal.withInitial(Registry::new);
+    private static final ThreadLocal<Output> OUTPUTS = ThreadLocal.withInitial(() -> new Output(BUFFER, -1));
+    private static final ThreadLocal<Input> INPUTS = ThreadLocal.withInitial(() -> new Input(BUFFER));
+
+    /**
+     * @param types the classes of the payloads (arguments, results, their fields),
+     *              registered in the same order on the client and the server, before the first call
+     */
+    public static void register(Class<?>... types) {
+        for (Class<?> type : types) {
+            if (!TYPES.contains(type)) {
+                TYPES.add(type);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return KRYO;
+    }
+
+    @Override
+    public ByteString encode(Packet<?> packet) {
+        if (packet.getPayload() instanceof Throwable) {
+            packet = new Packet<>(packet.getCommand(), Status.fromThrowable((Throwable) packet.getPayload()).asRuntimeException());
+        }
+        Output output = OUTPUTS.get();
+        output.clear();
+        try {
+            REGISTRIES.get().kryo().writeObject(output, packet);
+            return ByteString.copyFrom(output.getBuffer(), 0, output.position());
+        } finally {
+            if (output.getBuffer().length > MAX_BUFFER) {
+                OUTPUTS.remove();
+            }
+        }
+    }
+
+    @Override
+    public Packet<?> decode(ByteString data) {
+        Input input = INPUTS.get();
+        input.setInputStream(data.newInput());
+        try {
+            return REGISTRIES.get().kryo().readObject(input, Packet.class);
+        } finally {
+            input.setInputStream(null);
+        }
+    }
+
+}
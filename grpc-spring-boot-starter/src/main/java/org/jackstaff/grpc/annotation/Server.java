@@ -17,6 +17,7 @@
 package org.jackstaff.grpc.annotation;
 
 import org.jackstaff.grpc.Interceptor;
+import org.jackstaff.grpc.configuration.Dispatcher;
 import org.springframework.core.annotation.AliasFor;
 import org.springframework.stereotype.Component;
 
@@ -55,4 +56,22 @@ public @interface Server {
      */
     Class<? extends Interceptor>[] interceptor() default {};
 
+    /**
+     * the executor of this server component, override the server config's "dispatcher",
+     * INHERIT: the server config's. DIRECT only if the server config's is DIRECT too, it's rejected at startup otherwise
+     */
+    Dispatcher dispatcher() default Dispatcher.INHERIT;
+
+    /**
+     * max in-flight calls of this server component, the excess are rejected with RESOURCE_EXHAUSTED,
+     * 0: unlimited (or the bean class's @MaxConcurrency)
+     * @see MaxConcurrency
+     */
+    int maxConcurrency() default 0;
+
+    /**
+     * max calls wait for the in-flight ones when "maxConcurrency" is reached, 0: reject immediately
+     */
+    int maxQueue() default 0;
+
 }
@@ -73,7 +73,8 @@ public class SpringConfiguration {
                 if (services.length == 0) {
                     throw new ValidationException(bean.getClass().getName() + "@Server service is empty");
                 }
-                Arrays.stream(services).forEach(type->server.register(type, bean, getInterceptors(s.interceptor())));
+                Arrays.stream(services).forEach(type->server.register(type, bean, getInterceptors(s.interceptor()), s.dispatcher(),
+                        s.maxConcurrency(), s.maxQueue()));
             });
             server.start(cfg);
             if (appContext instanceof ConfigurableApplicationContext){
@@ -86,9 +87,16 @@ public class SpringConfiguration {
 
     public org.jackstaff.grpc.Client newClient() {
         org.jackstaff.grpc.Client client = new org.jackstaff.grpc.Client((type, handler) ->
-                Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler::invoke));
-        Optional.ofNullable(configuration.getClient()).ifPresent(client::setup);
-        appContext.getBeansWithAnnotation(Component.class).forEach((name, bean) -> inject(client, name, bean));
+                Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler::invoke), true);
+        Map<String, Object> beans = appContext.getBeansWithAnnotation(Component.class);
+        Map<String, Set<Class<?>>> protocols = new HashMap<>();
+        beans.values().forEach(bean -> clientFields(bean).forEach((field, c) -> {
+            if (field.getType().isInterface()) {
+                protocols.computeIfAbsent(authority(c), k -> new HashSet<>()).add(field.getType());
+            }
+        }));
+        Optional.ofNullable(configuration.getClient()).ifPresent(cfg -> client.setup(cfg, protocols));
+        beans.forEach((name, bean) -> inject(client, name, bean));
         if (appContext instanceof ConfigurableApplicationContext){
             ConfigurableApplicationContext ctx = ((ConfigurableApplicationContext) appContext);
             ctx.addApplicationListener((ApplicationListener<ContextClosedEvent>) evt -> client.shutdown());
@@ -112,8 +120,12 @@ public class SpringConfiguration {
         return fields;
     }
 
+    private static String authority(Client client) {
+        return Optional.of(client.authority()).filter(a -> !a.isEmpty()).orElseGet(client::value);
+    }
+
     private void inject(org.jackstaff.grpc.Client theClient, String name, Object bean, Field field, Client client) {
-        String authority = Optional.of(client.authority()).filter(a -> !a.isEmpty()).orElseGet(client::value);
+        String authority = authority(client);
         if (authority.isEmpty()) {
             throw new ValidationException(name + ":" + field.getName() + "@Client value/authority is empty");
         }